@@ -0,0 +1,99 @@
+class TestGC {
+    public static void main(String[] a){
+        System.out.println(new Churn().Start(1000));
+    }
+}
+
+class Node {
+    int value;
+    Node next;
+
+    public Node Init(int v, Node n){
+        value = v;
+        next = n;
+        return this;
+    }
+
+    public int Value(){
+        return value;
+    }
+
+    public Node Next(){
+        return next;
+    }
+
+    public int Plus(int x){
+        return value + x;
+    }
+}
+
+// makes several megabytes of garbage, so the collector has to run a few times while a list, an array, a node only
+// held in a temp, and the address of an element of the array are all still live
+// prints 1053549
+class Churn {
+    Node keep;
+    int[] counts;
+    int[] last;
+
+    public int Start(int rounds){
+        int i;
+        int j;
+        int r;
+        int total;
+        Node n;
+
+        keep = new Node().Init(0, keep);
+        i = 1;
+        while (i < 100){
+            keep = new Node().Init(i, keep);
+            i = i + 1;
+        }
+        counts = new int[100];
+
+        total = 0;
+        j = 0;
+        r = 0;
+        while (r < rounds){
+            // the new node is only held in a temp while Garbage runs
+            total = total + new Node().Init(r, keep).Plus(this.Garbage(r));
+            counts[j] = counts[j] + this.Garbage(j);
+            if (j < 99) j = j + 1;
+            else j = 0;
+            r = r + 1;
+        }
+
+        n = keep;
+        i = 0;
+        while (i < 100){
+            total = total + n.Value();
+            n = n.Next();
+            i = i + 1;
+        }
+        i = 0;
+        while (i < counts.length){
+            total = total + counts[i];
+            i = i + 1;
+        }
+
+        return total + last[499];
+    }
+
+    // a hundred nodes and a 500 element array that are garbage as soon as we return k
+    public int Garbage(int k){
+        int i;
+        Node n;
+        int[] junk;
+
+        n = new Node();
+        i = 0;
+        while (i < 100){
+            n = new Node().Init(i, n);
+            i = i + 1;
+        }
+        junk = new int[500];
+        junk[499] = k;
+        last = junk;
+
+        return junk[499] + n.Value() - 99;
+    }
+}
@@ -0,0 +1,22 @@
+class TestLargeIndex {
+    public static void main(String[] a){
+        System.out.println(new Big().run(3000));
+    }
+}
+
+class Big {
+    int[] arr;
+
+    public int run(int n){
+        int sum;
+
+        arr = new int[n];
+        arr[1022] = 1;
+        arr[1023] = 20;
+        arr[2000] = 300;
+        arr[2999] = arr[2000] + arr[1023];
+        sum = arr[1022] + arr[1023] + arr[2000] + arr[2999];
+
+        return sum;
+    }
+}
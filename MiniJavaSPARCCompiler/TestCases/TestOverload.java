@@ -1,6 +1,11 @@
 class TestOverload {
     public static void main(String[] a){
-        System.out.println(new T().overload(3));
+        {
+            System.out.println(new T().overload(3));
+            System.out.println(new T2().overload(9, 4));
+            System.out.println(new T2().overload(2, true));
+            System.out.println(new T2().overload());
+        }
     }
 }
 
@@ -13,4 +18,18 @@ class T {
     public int overload(int a){
         return (a + a) * a;
     }
-}
\ No newline at end of file
+
+    public int overload(int a, int b){
+        return a - b;
+    }
+}
+
+// overload(int, int) and overload() are only declared in T, and still have to be found from here
+class T2 extends T {
+    public int overload(int a, boolean b){
+        int r;
+        if (b) r = a * 10;
+        else r = a;
+        return r;
+    }
+}
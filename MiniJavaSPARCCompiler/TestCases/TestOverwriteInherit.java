@@ -1,18 +1,48 @@
 class TestOverwriteInherit {
     public static void main(String[] a){
-        System.out.println(new T1().overload(3));
+        {
+            System.out.println(new T1().overload(3));
+            System.out.println(new T1().fields(7, 5));
+            System.out.println(new T1().twice(6));
+            System.out.println(new T1().sub(10, 3));
+        }
     }
 }
 
 class TB {
+    int base;
+
     public int overload(int a){
         return a;
     }
+
+    public int twice(int a){
+        return a + a;
+    }
+
+    public int setBase(int b){
+        base = b;
+        return base;
+    }
 }
 
 class T1 extends TB {
+    int own;
 
     public int overload(int a){
         return a + 4 * a;
     }
-}
\ No newline at end of file
+
+    // base is ours too, but in its own slot, so this is 100 * b + o
+    public int fields(int b, int o){
+        int x;
+        own = o;
+        x = this.setBase(b);
+        return base * 100 + own;
+    }
+
+    // a comes in first
+    public int sub(int a, int b){
+        return a - b;
+    }
+}
@@ -0,0 +1,322 @@
+package global;
+
+import java.util.List;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import tree.*;
+
+// decides whether a load and a store can touch the same word of memory
+// on its own, all it knows is where an address points: our frame, a field of this, or somewhere else on the heap.
+// given the symbol table, it works out the MiniJava type of whatever every temp of a method holds, and from that
+// whether an address is a field of some class, the length of an array, or one of its elements. an int[] element is
+// never a field, and a field of one class can only be the same word as a field at the same offset of a class above
+// or below it
+public class AliasAnalysis {
+
+    private static final int FRAME = 0, FIELD = 1, LENGTH = 2, ELEMENT = 3, ARRAY = 4, UNKNOWN = 5, GLOBAL = 6;
+    private static final String ARRAY_TYPE = "int[]", INTERIOR = "int[]+", CONFLICT = "?";
+    // BumpAllocator hands out alloc_ptr + 4 when there's room, and whatever alloc_slow gives back when there isn't.
+    // the first is FREE + 4, which is NEW: something just allocated, whose type only the call to alloc_slow knows
+    private static final String FREE = "alloc_ptr", NEW = "new";
+
+    // what an address points at
+    private static class Location {
+        int kind, offset;
+        String cls;     // the class a field belongs to, if we know it, or the name of a global
+        Location(int k, String c, int o){ kind = k; cls = c; offset = o; }
+    }
+
+    private SymbolTable table;
+    private String className;
+    private MethodSymbol decl;                              // args and locals of our method
+    private HashMap<NameOfTemp, String> temps = new HashMap();  // the type of what each temp holds
+    private HashSet<NameOfTemp> pointers = new HashSet();       // temps that could ever hold an address on the heap
+
+    // without a symbol table, we only look at where addresses point
+    public AliasAnalysis(){
+        this(null, null);
+    }
+
+    public AliasAnalysis(SymbolTable table, String method){
+        this.table = table;
+        if (table != null && method != null){
+            className = method.substring(0, method.indexOf("$"));
+            decl = table.method(method);
+        }
+    }
+
+    // work out the type of every temp from everything moved into it
+    // at first we skip anything we can't type yet, since it might depend on a temp we haven't gotten to. after that,
+    // anything we still can't type makes its temp unknown, until nothing changes
+    public void analyze(List<Stm> statements){
+        temps.clear();
+        pointers.clear();
+        if (table == null){
+            return;
+        }
+        while (infer(statements, false));
+        while (infer(statements, true));
+        while (inferPointers(statements));
+    }
+
+    // a temp is a pointer if anything moved into it is, even if something else moved into it isn't. so it only
+    // isn't one when everything moved into it is provably an int or a boolean
+    private boolean inferPointers(List<Stm> statements){
+        boolean changed = false;
+        for (Stm s: statements){
+            if (s instanceof MOVE && ((MOVE)s).dst instanceof TEMP
+                    && !((TEMP)((MOVE)s).dst).temp.toString().startsWith("%") && pointsTo(((MOVE)s).src)){
+                changed = pointers.add(((TEMP)((MOVE)s).dst).temp) || changed;
+            }
+        }
+        return changed;
+    }
+
+    private boolean isPointer(String type){
+        return isClass(type) || ARRAY_TYPE.equals(type) || INTERIOR.equals(type) || NEW.equals(type);
+    }
+
+    private boolean isScalar(String type){
+        return "int".equals(type) || "boolean".equals(type);
+    }
+
+    // a pointer the collector doesn't know about is left pointing into a space that's gone, while an int it thinks
+    // could be one only moves if it happens to look like an address on the heap. so whatever a load, a call or a
+    // register gives back counts as a pointer unless we know it's an int or a boolean
+    private boolean pointsTo(Exp e){
+        String type = typeOf(e);
+        if (isPointer(type)){
+            return true;
+        } else if (e instanceof TEMP){
+            return ((TEMP)e).temp.toString().startsWith("%") ? !isScalar(type) : pointers.contains(((TEMP)e).temp);
+        } else if (e instanceof MEM || e instanceof CALL){
+            return !isScalar(type);
+        } else if (e instanceof RET){
+            return pointsTo(((RET)e).exp);
+        } else if (e instanceof BINOP && ((BINOP)e).binop == BINOP.PLUS){
+            return pointsTo(((BINOP)e).left) || pointsTo(((BINOP)e).right);
+        } else if (e instanceof BINOP && ((BINOP)e).binop == BINOP.MINUS){
+            return pointsTo(((BINOP)e).left);
+        }
+        return false;
+    }
+
+    // could t ever hold the address of something on the heap? this is all the collector needs to know
+    public boolean mayPoint(NameOfTemp t){
+        return t.toString().startsWith("%") ? !isScalar(typeOf(new TEMP(t))) : pointers.contains(t);
+    }
+
+    // could the local at %fp - 4*loc?
+    public boolean mayPointLocal(int loc){
+        return decl != null && isPointer(varType(decl.locals, loc));
+    }
+
+    private boolean infer(List<Stm> statements, boolean pessimistic){
+        boolean changed = false;
+        NameOfTemp t;
+        String type, current;
+
+        for (Stm s: statements){
+            if (!(s instanceof MOVE) || !(((MOVE)s).dst instanceof TEMP)){
+                continue;
+            }
+            t = ((TEMP)((MOVE)s).dst).temp;
+            // registers get their types from our declaration instead
+            if (t.toString().startsWith("%")){
+                continue;
+            }
+            type = typeOf(((MOVE)s).src);
+            if (type == null && !pessimistic){
+                continue;
+            }
+            type = merge(temps.get(t), type == null ? CONFLICT : type);
+            if (!type.equals(temps.get(t))){
+                temps.put(t, type);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // what a temp holds, now that type has been moved into it too
+    // anything just allocated is the same as whatever the slow path of its allocation says it is
+    private String merge(String current, String type){
+        if (current == null || current.equals(type)){
+            return type;
+        } else if (NEW.equals(current) && !NEW.equals(type) && isPointer(type)){
+            return type;
+        } else if (NEW.equals(type) && isPointer(current)){
+            return current;
+        }
+        return CONFLICT;
+    }
+
+    // the type of our arg or local in slot
+    private static String varType(VarSymbol[] vars, int slot){
+        return slot >= 1 && slot <= vars.length ? vars[slot - 1].type : null;
+    }
+
+    private String superclass(String cls){
+        ClassSymbol c = table.lookup(cls).superclass;
+        return c == null ? null : c.name;
+    }
+
+    private boolean isClass(String type){
+        return table.isClass(type);
+    }
+
+    // the type of the field at offset in cls, wherever it was declared
+    private String fieldType(String cls, int offset){
+        VarSymbol field = isClass(cls) ? table.lookup(cls).field(offset / 4) : null;
+        return field == null ? null : field.type;
+    }
+
+    // is one class the same as, or inherited from, the other?
+    private boolean related(String a, String b){
+        for (String c = a; isClass(c); c = superclass(c)){
+            if (c.equals(b)){
+                return true;
+            }
+        }
+        for (String c = b; isClass(c); c = superclass(c)){
+            if (c.equals(a)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the MiniJava type of what e works out to, or null if we can't tell
+    public String typeOf(Exp e){
+        String name, l, r;
+        Location loc;
+        if (table == null){
+            return null;
+        } else if (e instanceof TEMP){
+            name = ((TEMP)e).temp.toString();
+            if (name.equals("%i0")){
+                // this is only ever moved into by a return, which doesn't touch memory afterwards
+                return className;
+            } else if (name.matches("%i[1-5]")){
+                return decl == null ? null : varType(decl.args, Integer.parseInt(name.substring(2)));
+            }
+            return CONFLICT.equals(temps.get(((TEMP)e).temp)) ? null : temps.get(((TEMP)e).temp);
+        } else if (e instanceof CONST){
+            return "int";
+        } else if (e instanceof MEM){
+            loc = locate(((MEM)e).exp);
+            if (loc.kind == FRAME && loc.offset < 0 && loc.offset % 4 == 0){
+                return decl == null ? null : varType(decl.locals, -loc.offset / 4);
+            } else if (loc.kind == FIELD && loc.cls != null && loc.offset % 4 == 0){
+                return fieldType(loc.cls, loc.offset);
+            } else if (loc.kind == LENGTH || loc.kind == ELEMENT){
+                return "int";
+            } else if (loc.kind == GLOBAL && FREE.equals(loc.cls) && loc.offset == 0){
+                return FREE;
+            }
+            return null;
+        } else if (e instanceof BINOP){
+            // adding anything to an array gives us somewhere inside of it
+            l = typeOf(((BINOP)e).left);
+            r = typeOf(((BINOP)e).right);
+            if (((BINOP)e).binop == BINOP.PLUS && FREE.equals(l) && ((BINOP)e).right instanceof CONST
+                    && ((CONST)((BINOP)e).right).value == 4){
+                return NEW;
+            } else if ((((BINOP)e).binop == BINOP.PLUS || ((BINOP)e).binop == BINOP.MINUS)
+                    && (ARRAY_TYPE.equals(l) || INTERIOR.equals(l))){
+                return INTERIOR;
+            } else if (((BINOP)e).binop == BINOP.PLUS && (ARRAY_TYPE.equals(r) || INTERIOR.equals(r))){
+                return INTERIOR;
+            }
+            return "int";
+        } else if (e instanceof CALL && ((CALL)e).func instanceof NAME){
+            name = ((NAME)((CALL)e).func).label.toString();
+            // allocations are handed the layout of the class they're making, anything else is an array
+            if (name.equals("alloc_obj") || name.equals("alloc_slow") || name.equals("alloc_array")){
+                e = ((CALL)e).args == null ? null : ((CALL)e).args.toList().get(0);
+                if (!name.equals("alloc_array") && e instanceof NAME && ((NAME)e).label.toString().endsWith("$layout")){
+                    name = ((NAME)e).label.toString();
+                    return name.substring(0, name.length() - "$layout".length());
+                }
+                return ARRAY_TYPE;
+            }
+            return table.method(name) == null ? null : table.method(name).type;
+        } else if (e instanceof RET){
+            return typeOf(((RET)e).exp);
+        }
+        return null;
+    }
+
+    private static boolean isBase(Exp e, String reg){
+        return e instanceof TEMP && ((TEMP)e).temp.toString().equals(reg);
+    }
+
+    private Location locate(Exp addr){
+        Exp base = addr;
+        int offset = 0;
+        String type;
+
+        if (addr instanceof BINOP && ((BINOP)addr).right instanceof CONST
+                && (((BINOP)addr).binop == BINOP.PLUS || ((BINOP)addr).binop == BINOP.MINUS)){
+            base = ((BINOP)addr).left;
+            offset = ((CONST)((BINOP)addr).right).value;
+            offset = ((BINOP)addr).binop == BINOP.MINUS ? -offset : offset;
+        }
+        if (isBase(base, "%fp")){
+            return new Location(FRAME, null, offset);
+        } else if (base instanceof NAME){
+            return new Location(GLOBAL, ((NAME)base).label.toString(), offset);
+        }
+
+        type = typeOf(base);
+        if (isClass(type)){
+            return new Location(FIELD, type, offset);
+        } else if (ARRAY_TYPE.equals(type)){
+            return new Location(offset == 0 ? LENGTH : ELEMENT, null, offset);
+        } else if (INTERIOR.equals(type)){
+            // elements are always at least 4 past the start of the array, since the length comes first
+            return new Location(offset >= 4 ? ELEMENT : ARRAY, null, offset);
+        } else if (table != null){
+            return new Location(UNKNOWN, null, offset);
+        }
+
+        // no symbol table, so all we go on is the shape of the address
+        if (isBase(base, "%i0")){
+            return new Location(FIELD, null, offset);
+        }
+        return new Location(addr instanceof BINOP ? ELEMENT : LENGTH, null, offset);
+    }
+
+    public boolean isFrame(Exp addr){
+        return locate(addr).kind == FRAME;
+    }
+
+    // our frame and this are never null, so loading from them can't trap
+    public static boolean safeLoad(Exp addr){
+        Exp base = addr;
+        if (addr instanceof BINOP && ((BINOP)addr).right instanceof CONST){
+            base = ((BINOP)addr).left;
+        }
+        return isBase(base, "%fp") || isBase(base, "%i0");
+    }
+
+    public boolean mayAlias(Exp load, Exp store){
+        Location l = locate(load), s = locate(store);
+        // nothing can point into our frame but %fp, or at the runtime's globals but their names
+        if (l.kind == FRAME || s.kind == FRAME){
+            return l.kind == s.kind && l.offset == s.offset;
+        } else if (l.kind == GLOBAL || s.kind == GLOBAL){
+            return l.kind == s.kind && l.cls.equals(s.cls) && l.offset == s.offset;
+        } else if (l.kind == UNKNOWN || s.kind == UNKNOWN){
+            return true;
+        } else if (l.kind == FIELD || s.kind == FIELD){
+            return l.kind == s.kind && l.offset == s.offset
+                    && (l.cls == null || s.cls == null || related(l.cls, s.cls));
+        } else if (l.kind == ARRAY || s.kind == ARRAY){
+            return true;
+        }
+        // storing to an element never changes the length
+        return l.kind == s.kind;
+    }
+}
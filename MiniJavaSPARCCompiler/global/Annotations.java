@@ -0,0 +1,32 @@
+package global;
+import syntax.*;
+
+import java.util.IdentityHashMap;
+
+// what LookupChecker worked out about each expression, so nothing after it has to work it out again
+// it's keyed by the node itself, since the same expression can be written in two places and mean two things
+public class Annotations {
+    private IdentityHashMap<Expression, Type> types = new IdentityHashMap();
+    private IdentityHashMap<Call, MethodSymbol> calls = new IdentityHashMap();
+    private IdentityHashMap<Object, VarSymbol> vars = new IdentityHashMap();   // identifiers and IdentifierExps
+
+    public void type(Expression e, Type t){ types.put(e, t); }
+
+    // null if it was never checked
+    public Type type(Expression e){ return types.get(e); }
+
+    public void call(Call c, MethodSymbol m){ calls.put(c, m); }
+
+    // the declaration a call goes to, or null if it doesn't match one
+    public MethodSymbol call(Call c){ return calls.get(c); }
+
+    // the arg, local or field a use of a name turned out to be, which already knows its slot and offset
+    public void var(Identifier i, VarSymbol v){ vars.put(i, v); }
+
+    public void var(IdentifierExp e, VarSymbol v){ vars.put(e, v); }
+
+    // null if it wasn't declared anywhere we could see
+    public VarSymbol var(Identifier i){ return vars.get(i); }
+
+    public VarSymbol var(IdentifierExp e){ return vars.get(e); }
+}
@@ -0,0 +1,101 @@
+package global;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import tree.*;
+
+// allocates objects and arrays inline, out of the space the runtime is handing out
+// the runtime keeps the next free address in alloc_ptr and the end of its space in alloc_limit. if there's room,
+// an allocation is just bumping alloc_ptr past it and writing its header, and we only call alloc_slow (which can
+// collect, or get a bigger space) when there isn't. the space always comes back cleared, like calloc would have it
+// every allocation is a header word followed by the object: objects get the address of the layout of their class,
+// arrays get their size in bytes with the low bit set. what we hand back points just past the header
+// this runs after escape analysis, which looks for the calls to alloc_obj and alloc_array we're replacing here
+public class BumpAllocator {
+
+    public int inlined = 0;     // how many allocations don't need a call any more (unless the space runs out)
+    private int c = 0;
+
+    public List<Stm> lower(List<Stm> statements){
+        ArrayList<Stm> out = new ArrayList();
+        CALL call;
+        String name;
+        for (Stm s: statements){
+            call = s instanceof MOVE && ((MOVE)s).dst instanceof TEMP && ((MOVE)s).src instanceof CALL
+                    ? (CALL)((MOVE)s).src : null;
+            name = call != null && call.func instanceof NAME && call.args != null
+                    ? ((NAME)call.func).label.toString() : "";
+            if (name.equals("alloc_obj") && call.args.toList().size() == 2
+                    && call.args.toList().get(1) instanceof CONST){
+                out.addAll(allocate((TEMP)((MOVE)s).dst, call.args.toList().get(0),
+                        ((CONST)call.args.toList().get(1)).value));
+            } else if (name.equals("alloc_array") && call.args.toList().size() == 1){
+                out.addAll(allocate((TEMP)((MOVE)s).dst, call.args.toList().get(0)));
+            } else {
+                out.add(s);
+            }
+        }
+        return out;
+    }
+
+    private TEMP fresh(){
+        return new TEMP(new NameOfTemp(String.format("bump%03d", ++c)));
+    }
+
+    // an object always takes up at least one word, so nothing else ever starts right where it points
+    private List<Stm> allocate(TEMP t, Exp layout, int words){
+        ArrayList<Stm> out = new ArrayList();
+        LABEL slow = LABEL.generateLABEL("allocSlow"), done = LABEL.generateLABEL("allocDone");
+
+        bump(out, t, new CONST(4 * (Math.max(words, 1) + 1)), layout, slow, done);
+        out.add(slow);
+        out.add(new MOVE(t, new CALL(new NAME(new NameOfLabel("alloc_slow")), Arrays.asList(layout, new CONST(words)))));
+        out.add(done);
+        return out;
+    }
+
+    // an array of a negative size would have nothing (or less) past its length, so the runtime gets to complain
+    // about it instead
+    private List<Stm> allocate(TEMP t, Exp size){
+        ArrayList<Stm> out = new ArrayList();
+        TEMP n = fresh(), bytes = fresh(), header = fresh();
+        LABEL slow = LABEL.generateLABEL("allocSlow"), done = LABEL.generateLABEL("allocDone"),
+                positive = LABEL.generateLABEL("allocPositive");
+
+        out.add(new MOVE(n, size));
+        out.add(new MOVE(bytes, new BINOP(BINOP.LSHIFT, n, new CONST(2))));
+        out.add(new MOVE(header, new BINOP(BINOP.PLUS, bytes, new CONST(1))));
+        out.add(new CJUMP(CJUMP.LE, n, new CONST(0), slow.label, positive.label));
+        out.add(positive);
+        bump(out, t, new BINOP(BINOP.PLUS, bytes, new CONST(4)), header, slow, done);
+        out.add(slow);
+        out.add(new MOVE(t, new CALL(new NAME(new NameOfLabel("alloc_slow")), Arrays.asList(header, n))));
+        out.add(done);
+        return out;
+    }
+
+    //      p := alloc_ptr
+    //      if alloc_limit - p <u bytes goto slow
+    //      alloc_ptr := p + bytes
+    //      MEM[p] := header
+    //      t := p + 4
+    //      goto done
+    // AliasAnalysis knows p + 4 is something we just allocated, and gives t the type of what alloc_slow makes
+    private void bump(List<Stm> out, TEMP t, Exp bytes, Exp header, LABEL slow, LABEL done){
+        Exp ptr = new MEM(new NAME(new NameOfLabel("alloc_ptr")));
+        Exp limit = new MEM(new NAME(new NameOfLabel("alloc_limit")));
+        TEMP p = fresh();
+        LABEL fast = LABEL.generateLABEL("allocFast");
+
+        out.add(new MOVE(p, ptr));
+        out.add(new CJUMP(CJUMP.ULT, new BINOP(BINOP.MINUS, limit, p), bytes, slow.label, fast.label));
+        out.add(fast);
+        out.add(new MOVE(ptr, new BINOP(BINOP.PLUS, p, bytes)));
+        out.add(new MOVE(new MEM(p), header));
+        out.add(new MOVE(t, new BINOP(BINOP.PLUS, p, new CONST(4))));
+        out.add(new JUMP(done.label));
+        inlined++;
+    }
+}
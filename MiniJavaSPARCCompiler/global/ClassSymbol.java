@@ -0,0 +1,155 @@
+package global;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+// a class, its fields and its methods
+// a class only holds what it declares itself, and finds everything it inherits through its superclass, so a deep
+// hierarchy doesn't copy the same members into every class below them. fields are numbered after all the ones
+// we inherit, and fields and methods are only filled in once LookupCreator has put the class in place
+public class ClassSymbol extends Symbol {
+
+    private static final MethodSymbol[] NONE = new MethodSymbol[0];
+
+    public final String superName;      // the class we extend, if there is one
+    public ClassSymbol superclass;      // and its symbol, once we know it exists
+    public VarSymbol[] fields = new VarSymbol[0];           // the ones we declare, in order
+    public MethodSymbol[] methods = NONE;                   // the ones we declare, in order
+    public int numFields = 0;                               // counting the ones we inherit
+    private ArrayList<VarSymbol> declaredFields = new ArrayList();
+    private ArrayList<MethodSymbol> declaredMethods = new ArrayList();
+    private HashMap<String, VarSymbol> fieldNames = new HashMap();
+    private HashMap<String, MethodSymbol[]> overloads = new HashMap();
+    private HashMap<Signature, MethodSymbol> signatures = new HashMap();
+
+    // a method name and the ids of the types it takes, which is all it takes to tell overloads apart
+    private static final class Signature {
+        final String name;
+        final int[] types;
+        final int hash;
+
+        Signature(String name, int[] types){
+            this.name = name;
+            this.types = types;
+            hash = 31 * name.hashCode() + Arrays.hashCode(types);
+        }
+
+        public int hashCode(){ return hash; }
+
+        public boolean equals(Object o){
+            return o instanceof Signature && ((Signature)o).hash == hash && ((Signature)o).name.equals(name)
+                    && Arrays.equals(((Signature)o).types, types);
+        }
+    }
+
+    public ClassSymbol(int id, String name, String superName){
+        super(id, name);
+        this.superName = superName;
+    }
+
+    // false if we already have a field by that name
+    public boolean declare(VarSymbol field){
+        if (fieldNames.putIfAbsent(field.name, field) != null){
+            return false;
+        }
+        declaredFields.add(field);
+        return true;
+    }
+
+    // false if we already have a method that takes the same args
+    public boolean declare(MethodSymbol method){
+        MethodSymbol[] named = overloads.getOrDefault(method.name, NONE);
+        for (MethodSymbol m: named){
+            if (m.sameArgs(method)){
+                return false;
+            }
+        }
+        method.number = String.format("%03d", named.length + 1);
+        named = Arrays.copyOf(named, named.length + 1);
+        named[named.length - 1] = method;
+        overloads.put(method.name, named);
+        declaredMethods.add(method);
+        return true;
+    }
+
+    // puts our fields after those of our superclass, which has already been put in place
+    // with no superclass (or none we can use), they start at the front
+    public void inherit(ClassSymbol parent){
+        superclass = parent;
+        numFields = parent == null ? 0 : parent.numFields;
+        fields = declaredFields.toArray(new VarSymbol[0]);
+        methods = declaredMethods.toArray(NONE);
+        for (VarSymbol v: fields){
+            v.place(numFields++);
+        }
+    }
+
+    // ours hide anything by the same name we inherit
+    public VarSymbol field(String name){
+        VarSymbol v;
+        for (ClassSymbol c = this; c != null; c = c.superclass){
+            v = c.fieldNames.get(name);
+            if (v != null){
+                return v;
+            }
+        }
+        return null;
+    }
+
+    // the field in slot, wherever it was declared
+    public VarSymbol field(int slot){
+        ClassSymbol c = this;
+        while (c != null && slot < c.numFields - c.fields.length){
+            c = c.superclass;
+        }
+        return c == null || slot < 0 || slot >= c.numFields ? null : c.fields[slot - (c.numFields - c.fields.length)];
+    }
+
+    // the ones we declare by that name
+    public MethodSymbol[] overloads(String name){
+        return overloads.getOrDefault(name, NONE);
+    }
+
+    // do we, or anything we inherit from, declare any method by that name?
+    public boolean hasMethod(String name){
+        for (ClassSymbol c = this; c != null; c = c.superclass){
+            if (c.overloads.containsKey(name)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // builds the signature index of the methods we declare
+    public void index(SymbolTable table){
+        signatures.clear();
+        for (MethodSymbol m: methods){
+            signatures.put(new Signature(m.name, m.argTypes(table)), m);
+        }
+    }
+
+    // the declaration that takes exactly the types with these ids, or null if there isn't one
+    // ours come first, so they hide anything they override. whatever we find further up gets remembered here, so
+    // calling the same thing again is one lookup
+    public MethodSymbol resolve(String name, int[] types){
+        Signature s = new Signature(name, types);
+        MethodSymbol m = signatures.get(s);
+        if (m == null && superclass != null){
+            m = superclass.resolve(name, types);
+            if (m != null){
+                signatures.put(s, m);
+            }
+        }
+        return m;
+    }
+
+    public boolean extendsClass(ClassSymbol other){
+        for (ClassSymbol c = this; c != null; c = c.superclass){
+            if (c == other){
+                return true;
+            }
+        }
+        return false;
+    }
+}
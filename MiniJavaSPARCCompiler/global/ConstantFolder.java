@@ -0,0 +1,302 @@
+package global;
+
+import java.util.List;
+import java.util.ArrayList;
+
+import tree.*;
+
+// constant folding and algebraic simplification over the IR, before linearization
+// anything we can work out now is something we don't have to put into a register and compute at runtime
+public class ConstantFolder {
+
+    public int folded = 0;  // how many nodes we got rid of
+
+    public Stm fold(Stm s){
+        if (s instanceof SEQ){
+            return new SEQ(fold(((SEQ)s).left), fold(((SEQ)s).right));
+        } else if (s instanceof MOVE){
+            return foldMove((MOVE)s);
+        } else if (s instanceof EVAL){
+            return new EVAL(fold(((EVAL)s).exp));
+        } else if (s instanceof CJUMP){
+            return foldCJump((CJUMP)s);
+        } else if (s instanceof JUMP || s instanceof LABEL){
+            return s;
+        } else {
+            throw new UnsupportedOperationException(
+                    String.format("Found unexpected Statement Type: %s", s.getClass()));
+        }
+    }
+
+    public Exp fold(Exp e){
+        if (e instanceof BINOP){
+            return foldBinOp((BINOP)e);
+        } else if (e instanceof MEM){
+            return new MEM(fold(((MEM)e).exp));
+        } else if (e instanceof CALL){
+            return foldCall((CALL)e);
+        } else if (e instanceof RET){
+            return foldRet((RET)e);
+        } else if (e instanceof CONST || e instanceof TEMP || e instanceof NAME){
+            return e;
+        } else {
+            throw new UnsupportedOperationException(
+                    String.format("Found unexpected Expression Type: %s", e.getClass()));
+        }
+    }
+
+    // only fold inside of a mem destination, the temp or mem itself has to stay where it is
+    private Stm foldMove(MOVE m){
+        Exp dst = m.dst;
+        if (dst instanceof MEM){
+            dst = new MEM(fold(((MEM)dst).exp));
+        }
+        return new MOVE(dst, fold(m.src));
+    }
+
+    private Exp foldCall(CALL c){
+        ArrayList<Exp> args = new ArrayList();
+        if (c.args != null){
+            for (Exp arg: c.args.toList()){
+                args.add(fold(arg));
+            }
+        }
+        return new CALL(c.func, args);
+    }
+
+    private Exp foldRet(RET r){
+        Stm s = fold(r.stm);
+        Exp e = fold(r.exp);
+        // nothing left to do before the value, so just use the value
+        if (isNoop(s)){
+            folded++;
+            return e;
+        }
+        return new RET(s, e);
+    }
+
+    // a conditional jump we already know the answer to is just a jump
+    private Stm foldCJump(CJUMP c){
+        Exp l = fold(c.left), r = fold(c.right);
+        if (l instanceof CONST && r instanceof CONST){
+            folded++;
+            if (compare(c.relop, ((CONST)l).value, ((CONST)r).value)){
+                return new JUMP(c.iftrue);
+            }
+            return new JUMP(c.iffalse);
+        }
+        // the munched cmp wants its constant on the right, so flip the comparison around if we need to
+        if (l instanceof CONST){
+            return new CJUMP(flip(c.relop), r, l, c.iftrue, c.iffalse);
+        }
+        return new CJUMP(c.relop, l, r, c.iftrue, c.iffalse);
+    }
+
+    private Exp foldBinOp(BINOP b){
+        Exp l = fold(b.left), r = fold(b.right), t;
+        int op = b.binop;
+
+        if (l instanceof CONST && r instanceof CONST){
+            // dividing by zero is the program's problem at runtime, not ours now
+            if (op != BINOP.DIV || ((CONST)r).value != 0){
+                folded++;
+                return new CONST(compute(op, ((CONST)l).value, ((CONST)r).value));
+            }
+            return new BINOP(op, l, r);
+        }
+
+        // keep constants on the right, since that is where instructions can take them as immediates
+        if (l instanceof CONST && commutes(op)){
+            t = l;
+            l = r;
+            r = t;
+        }
+
+        if (r instanceof CONST){
+            int v = ((CONST)r).value;
+            switch (op){
+                case BINOP.PLUS:
+                case BINOP.MINUS:
+                case BINOP.OR:
+                case BINOP.XOR:
+                case BINOP.LSHIFT:
+                case BINOP.RSHIFT:
+                case BINOP.ARSHIFT:
+                    // x + 0, x - 0, x | 0, x ^ 0, x << 0
+                    if (v == 0){
+                        folded++;
+                        return l;
+                    }
+                    break;
+                case BINOP.MUL:
+                    // x * 1
+                    if (v == 1){
+                        folded++;
+                        return l;
+                    }
+                    // x * 0, as long as x doesn't do anything we need
+                    if (v == 0 && isPure(l)){
+                        folded++;
+                        return new CONST(0);
+                    }
+                    break;
+                case BINOP.DIV:
+                    if (v == 1){
+                        folded++;
+                        return l;
+                    }
+                    break;
+                case BINOP.AND:
+                    if (v == -1){
+                        folded++;
+                        return l;
+                    }
+                    if (v == 0 && isPure(l)){
+                        folded++;
+                        return new CONST(0);
+                    }
+                    break;
+            }
+
+            // (x + a) + b is x + (a + b), and the same for the other ops that group
+            if (l instanceof BINOP && ((BINOP)l).right instanceof CONST && regroups(op, ((BINOP)l).binop)){
+                folded++;
+                return foldBinOp(new BINOP(((BINOP)l).binop, ((BINOP)l).left,
+                        new BINOP(groupWith(op, ((BINOP)l).binop), ((BINOP)l).right, r)));
+            }
+        }
+
+        return new BINOP(op, l, r);
+    }
+
+    // which ops can we swap the operands of?
+    private static boolean commutes(int op){
+        return op == BINOP.PLUS || op == BINOP.MUL || op == BINOP.AND || op == BINOP.OR || op == BINOP.XOR;
+    }
+
+    // can (x inner a) outer b be written as x inner (a ? b)?
+    // this is what gets rid of !!x, which is (x ^ 1) ^ 1
+    private static boolean regroups(int outer, int inner){
+        switch (outer){
+            case BINOP.PLUS:
+            case BINOP.MINUS:
+                return inner == BINOP.PLUS || inner == BINOP.MINUS;
+            case BINOP.MUL:
+            case BINOP.AND:
+            case BINOP.OR:
+            case BINOP.XOR:
+                return inner == outer;
+            default:
+                return false;
+        }
+    }
+
+    // what goes in the ? above: (x + a) - b = x + (a - b), (x - a) - b = x - (a + b), and so on
+    private static int groupWith(int outer, int inner){
+        if (outer == BINOP.MINUS || inner == BINOP.MINUS){
+            return outer == inner ? BINOP.PLUS : BINOP.MINUS;
+        }
+        return outer;
+    }
+
+    // java ints wrap around the same way the registers do
+    private static int compute(int op, int l, int r){
+        switch (op){
+            case BINOP.PLUS:
+                return l + r;
+            case BINOP.MINUS:
+                return l - r;
+            case BINOP.MUL:
+                return l * r;
+            case BINOP.DIV:
+                return l / r;
+            case BINOP.AND:
+                return l & r;
+            case BINOP.OR:
+                return l | r;
+            case BINOP.LSHIFT:
+                return l << r;
+            case BINOP.RSHIFT:
+                return l >>> r;
+            case BINOP.ARSHIFT:
+                return l >> r;
+            case BINOP.XOR:
+                return l ^ r;
+            default:
+                throw new UnsupportedOperationException(String.format("Could not find BINOP #%d", op));
+        }
+    }
+
+    private static boolean compare(int relop, int l, int r){
+        switch (relop){
+            case CJUMP.EQ:
+                return l == r;
+            case CJUMP.NE:
+                return l != r;
+            case CJUMP.LT:
+                return l < r;
+            case CJUMP.GT:
+                return l > r;
+            case CJUMP.LE:
+                return l <= r;
+            case CJUMP.GE:
+                return l >= r;
+            case CJUMP.ULT:
+                return Integer.compareUnsigned(l, r) < 0;
+            case CJUMP.ULE:
+                return Integer.compareUnsigned(l, r) <= 0;
+            case CJUMP.UGT:
+                return Integer.compareUnsigned(l, r) > 0;
+            case CJUMP.UGE:
+                return Integer.compareUnsigned(l, r) >= 0;
+            default:
+                throw new UnsupportedOperationException(String.format("Could not find CJUMP #%d", relop));
+        }
+    }
+
+    // a < b is the same as b > a
+    private static int flip(int relop){
+        switch (relop){
+            case CJUMP.LT:
+                return CJUMP.GT;
+            case CJUMP.GT:
+                return CJUMP.LT;
+            case CJUMP.LE:
+                return CJUMP.GE;
+            case CJUMP.GE:
+                return CJUMP.LE;
+            case CJUMP.ULT:
+                return CJUMP.UGT;
+            case CJUMP.UGT:
+                return CJUMP.ULT;
+            case CJUMP.ULE:
+                return CJUMP.UGE;
+            case CJUMP.UGE:
+                return CJUMP.ULE;
+            default:
+                return relop;
+        }
+    }
+
+    // can we throw this away without changing what the program does?
+    // calls can print, and rets can have any statement in them
+    public static boolean isPure(Exp e){
+        if (e instanceof CONST || e instanceof TEMP || e instanceof NAME){
+            return true;
+        } else if (e instanceof MEM){
+            return isPure(((MEM)e).exp);
+        } else if (e instanceof BINOP){
+            return ((BINOP)e).binop != BINOP.DIV && isPure(((BINOP)e).left) && isPure(((BINOP)e).right);
+        }
+        return false;
+    }
+
+    private static boolean isNoop(Stm s){
+        if (s instanceof EVAL){
+            return isPure(((EVAL)s).exp);
+        } else if (s instanceof SEQ){
+            return isNoop(((SEQ)s).left) && isNoop(((SEQ)s).right);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,121 @@
+package global;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+import tree.*;
+
+// drops the fragments of methods that can never run
+// every call is bound to one method when we translate it, so starting at main and following the NAMEs of calls
+// finds everything the program can get to. a method is only translated in the class that declares it, and calls to
+// one it inherits go to that declaration, so what's left over is methods that got inlined at every call site, and
+// methods nothing ever calls
+public class DeadMethodEliminator {
+
+    public ArrayList<String> removed = new ArrayList();         // methods we dropped
+    public ArrayList<String> removedClasses = new ArrayList();  // classes none of whose methods are left
+
+    public ArrayList<Stm> eliminate(List<Stm> fragments, String entryPoint){
+        HashMap<String, Stm> byName = new HashMap();
+        HashSet<String> reached = new HashSet();
+        LinkedHashSet<String> classes = new LinkedHashSet();
+        HashSet<String> liveClasses = new HashSet();
+        ArrayList<String> work = new ArrayList(), callees;
+        ArrayList<Stm> out = new ArrayList();
+        String name;
+
+        for (Stm f: fragments){
+            byName.put(methodName(f), f);
+        }
+        // without main we can't tell what runs, so everything stays
+        if (!byName.containsKey(entryPoint)){
+            return new ArrayList(fragments);
+        }
+
+        work.add(entryPoint);
+        reached.add(entryPoint);
+        while (!work.isEmpty()){
+            name = work.remove(work.size() - 1);
+            if (byName.containsKey(name)){
+                callees = new ArrayList();
+                calls(byName.get(name), callees);
+                for (String callee: callees){
+                    if (reached.add(callee)){
+                        work.add(callee);
+                    }
+                }
+            }
+        }
+
+        // keep the fragments in the order we got them
+        for (Stm f: fragments){
+            name = methodName(f);
+            classes.add(className(name));
+            if (reached.contains(name)){
+                out.add(f);
+                liveClasses.add(className(name));
+            } else {
+                removed.add(name);
+            }
+        }
+        for (String c: classes){
+            if (!liveClasses.contains(c)){
+                removedClasses.add(c);
+            }
+        }
+        return out;
+    }
+
+    private static String methodName(Stm f){
+        String label = ((LABEL)((SEQ)f).left).label.toString();
+        return label.substring(0, label.lastIndexOf("$"));
+    }
+
+    private static String className(String method){
+        return method.substring(0, method.indexOf("$"));
+    }
+
+    // the names of everything s calls
+    private static List<String> calls(Stm s, List<String> found){
+        if (s instanceof SEQ){
+            calls(((SEQ)s).left, found);
+            calls(((SEQ)s).right, found);
+        } else if (s instanceof MOVE){
+            calls(((MOVE)s).dst, found);
+            calls(((MOVE)s).src, found);
+        } else if (s instanceof EVAL){
+            calls(((EVAL)s).exp, found);
+        } else if (s instanceof CJUMP){
+            calls(((CJUMP)s).left, found);
+            calls(((CJUMP)s).right, found);
+        } else if (s instanceof JUMP){
+            calls(((JUMP)s).exp, found);
+        }
+        return found;
+    }
+
+    private static List<String> calls(Exp e, List<String> found){
+        if (e instanceof BINOP){
+            calls(((BINOP)e).left, found);
+            calls(((BINOP)e).right, found);
+        } else if (e instanceof MEM){
+            calls(((MEM)e).exp, found);
+        } else if (e instanceof RET){
+            calls(((RET)e).stm, found);
+            calls(((RET)e).exp, found);
+        } else if (e instanceof CALL){
+            if (((CALL)e).func instanceof NAME){
+                found.add(((NAME)((CALL)e).func).label.toString());
+            }
+            if (((CALL)e).args != null){
+                for (Exp arg: ((CALL)e).args.toList()){
+                    calls(arg, found);
+                }
+            }
+        }
+        return found;
+    }
+}
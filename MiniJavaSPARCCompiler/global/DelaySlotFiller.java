@@ -0,0 +1,190 @@
+package global;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import assem.*;
+import tree.*;
+
+// fills the delay slots of branches and calls with something useful instead of a nop
+// runs after register allocation, so what registers an instruction touches is known
+// first we try moving the instruction right before the branch into its slot, since that instruction has to run
+// either way. if that doesn't work, a branch can take a copy of the first instruction at its target and jump
+// past it instead, annulling the slot for conditional branches so it only runs when the branch is taken
+public class DelaySlotFiller {
+
+    public int slots = 0, filled = 0;   // how many delay slots we saw, and how many we put something in
+
+    private HashMap<NameOfTemp, String> tempMap;
+    private int c = 0;
+
+    public DelaySlotFiller(HashMap<NameOfTemp, String> tempMap){
+        this.tempMap = tempMap;
+    }
+
+    private String opcode(Instruction i){
+        return FlowGraph.opcode(i, tempMap);
+    }
+
+    // anything that comes with a delay slot
+    public static boolean isDelayed(String op){
+        return FlowGraph.isBranch(op) || FlowGraph.isCall(op) || op.equals("ret") || op.equals("retl")
+                || op.equals("jmpl");
+    }
+
+    private boolean isNop(Instruction i){
+        return opcode(i).equals("nop");
+    }
+
+    // can this go in a delay slot at all? it has to be exactly one machine instruction that doesn't go anywhere
+    private boolean fitsSlot(Instruction i){
+        String op = opcode(i), text;
+        if (!(i instanceof OperationInstruction || i instanceof MoveInstruction) || op.isEmpty()
+                || op.startsWith(".") || isDelayed(op) || op.equals("nop")
+                || op.equals("save") || op.equals("restore")){
+            return false;
+        }
+        // set is only one instruction when its constant fits into 13 bits
+        if (op.equals("set")){
+            text = i.format(tempMap).trim().split("\\s+", 2)[1];
+            try {
+                int v = Integer.parseInt(text.split(",")[0].trim());
+                return v >= -4096 && v <= 4095;
+            } catch (NumberFormatException e){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean setsConditionCodes(String op){
+        return op.equals("cmp") || op.equals("tst") || op.endsWith("cc");
+    }
+
+    // can i move from right before b to right after it?
+    private boolean movable(Instruction i, Instruction b){
+        String op = opcode(b), text = i.format(tempMap);
+        if (!fitsSlot(i)){
+            return false;
+        }
+        // a conditional branch reads the condition codes, so whatever set them has to stay in front of it
+        if (FlowGraph.isBranch(op) && !FlowGraph.isUnconditional(op) && setsConditionCodes(opcode(i))){
+            return false;
+        }
+        // calls write where we return to, and returns read it
+        if ((FlowGraph.isCall(op) || op.equals("retl")) && text.contains("%o7")){
+            return false;
+        }
+        if (op.equals("ret") && text.contains("%i7")){
+            return false;
+        }
+        return true;
+    }
+
+    public List<Instruction> fill(List<Instruction> instructions){
+        return fillFromTargets(fillFromAbove(instructions));
+    }
+
+    // move the instruction right before each branch into its slot
+    private ArrayList<Instruction> fillFromAbove(List<Instruction> instructions){
+        ArrayList<Instruction> out = new ArrayList();
+        Instruction i, before;
+        int x, prev;
+
+        for (int n = 0; n < instructions.size(); n++){
+            i = instructions.get(n);
+            if (!isDelayed(opcode(i)) || n + 1 >= instructions.size() || !isNop(instructions.get(n + 1))){
+                out.add(i);
+                continue;
+            }
+            slots++;
+
+            // the last real instruction we put out, skipping over comments
+            x = out.size() - 1;
+            while (x >= 0 && out.get(x) instanceof Comment){
+                x--;
+            }
+            prev = x - 1;
+            while (prev >= 0 && out.get(prev) instanceof Comment){
+                prev--;
+            }
+
+            // it can't be sitting in the delay slot of something else already
+            if (x >= 0 && movable(out.get(x), i) && (prev < 0 || !isDelayed(opcode(out.get(prev))))){
+                before = out.remove(x);
+                out.add(i);
+                out.add(before);
+                filled++;
+                n++;
+            } else {
+                out.add(i);
+            }
+        }
+        return out;
+    }
+
+    // branches still holding a nop take the first instruction at their target, then jump past it
+    private ArrayList<Instruction> fillFromTargets(ArrayList<Instruction> instructions){
+        HashMap<String, Integer> labels = new HashMap();
+        HashMap<Integer, NameOfLabel> after = new HashMap();  // new labels to put after the instruction at an index
+        ArrayList<Instruction> out = new ArrayList();
+        Instruction b;
+        NameOfLabel target, past;
+        String op;
+        Integer k;
+
+        for (int n = 0; n < instructions.size(); n++){
+            if (instructions.get(n) instanceof LabelInstruction){
+                labels.put(((LabelInstruction)instructions.get(n)).label.toString(), n);
+            }
+        }
+
+        for (int n = 0; n + 1 < instructions.size(); n++){
+            b = instructions.get(n);
+            op = opcode(b);
+            if (!FlowGraph.isBranch(op) || !isNop(instructions.get(n + 1)) || b.jumps() == null
+                    || b.jumps().size() != 1 || op.contains(",")){
+                continue;
+            }
+            target = b.jumps().get(0);
+            k = labels.get(target.toString());
+            if (k == null){
+                continue;
+            }
+            // first real instruction at the target
+            while (k < instructions.size() && (instructions.get(k) instanceof LabelInstruction
+                    || instructions.get(k) instanceof Comment)){
+                k++;
+            }
+            if (k >= instructions.size() || !fitsSlot(instructions.get(k))){
+                continue;
+            }
+
+            past = after.get(k);
+            if (past == null){
+                past = new NameOfLabel(target.toString(), String.format("delay%03d", ++c));
+                after.put(k, past);
+            }
+            if (FlowGraph.isUnconditional(op)){
+                instructions.set(n, new OperationInstruction("\tba\t`j0", "unconditional GOTO",
+                        null, null, Arrays.asList(past)));
+            } else {
+                // only runs if we take the branch
+                instructions.set(n, new OperationInstruction(String.format("\t%s,a\t`j0", op),
+                        "conditional GOTO, annulled", null, null, Arrays.asList(past)));
+            }
+            instructions.set(n + 1, instructions.get(k));
+            filled++;
+        }
+
+        for (int n = 0; n < instructions.size(); n++){
+            out.add(instructions.get(n));
+            if (after.containsKey(n)){
+                out.add(new LabelInstruction(after.get(n)));
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,409 @@
+package global;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import tree.*;
+
+// finds objects and arrays that never leave the method that makes them, and keeps them off of the heap
+// an allocation doesn't escape when whatever holds it (its temp, and any temps or locals it only ever gets copied
+// into) is only ever used as the base of a load or store. storing it anywhere else, passing it to a call, returning
+// it, or doing anything else with it lets it escape
+// if every load and store is at a constant offset, every word of it turns into a temp of its own. otherwise, if
+// it's an array, it goes in our frame, past the locals, and gets cleared every time it would have been allocated.
+// objects could have fields the collector needs to find, so they only ever get turned into temps
+public class EscapeAnalysis {
+
+    private static final int MAX_WORDS = 32;   // the most words we are willing to put in our frame for one allocation
+
+    public int scalarReplaced = 0, stackAllocated = 0;  // how many allocations we kept off of the heap, and how
+    public int frameWords = 0;                          // how many words of our frame they take up
+    private int numLocals;
+    private int c = 0;
+
+    // one call to alloc_obj or alloc_array, and everything that holds what it gives back
+    private static class Site {
+        int index, words;
+        boolean array;
+        String root;
+        HashSet<String> holders = new HashSet();
+        boolean escapes = false, constant = true, kept = false;
+        Exp base;                                   // where in our frame it goes, if it goes there
+        HashSet<Integer> offsets = new HashSet();   // every offset it gets loaded from or stored to
+        HashMap<Integer, TEMP> fields = new HashMap();
+    }
+
+    private List<Stm> statements;
+    private HashMap<String, ArrayList<Exp>> defs = new HashMap();  // everything moved into each temp and local
+    private HashMap<String, Site> holding = new HashMap();         // which site each holder belongs to
+    private HashMap<String, Integer> labels = new HashMap();
+
+    public EscapeAnalysis(int numLocals){
+        this.numLocals = numLocals;
+    }
+
+    public List<Stm> analyze(List<Stm> statements){
+        ArrayList<Site> sites = new ArrayList();
+        Site site;
+
+        this.statements = statements;
+        for (int i = 0; i < statements.size(); i++){
+            if (statements.get(i) instanceof LABEL){
+                labels.put(((LABEL)statements.get(i)).label.toString(), i);
+            } else if (statements.get(i) instanceof MOVE && var(((MOVE)statements.get(i)).dst) != null){
+                defs.computeIfAbsent(var(((MOVE)statements.get(i)).dst), k -> new ArrayList())
+                        .add(((MOVE)statements.get(i)).src);
+            }
+        }
+
+        for (int i = 0; i < statements.size(); i++){
+            site = allocation(i);
+            if (site != null && defs.get(site.root).size() == 1){
+                holders(site);
+                sites.add(site);
+            }
+        }
+        for (Site s: sites){
+            for (String h: s.holders){
+                holding.put(h, s);
+            }
+        }
+
+        for (Stm s: statements){
+            scan(s);
+        }
+        for (Site s: sites){
+            if (!s.escapes && !stale(s)){
+                s.kept = true;
+                if (s.constant){
+                    scalarReplaced++;
+                } else if (!s.array){
+                    s.kept = false;
+                } else {
+                    frameWords += s.words;
+                    s.base = new BINOP(BINOP.MINUS, new TEMP("%fp"), new CONST(4 * (numLocals + frameWords)));
+                    stackAllocated++;
+                }
+            }
+        }
+        holding.values().removeIf(s -> !s.kept);
+        return rewrite();
+    }
+
+    // the name of the temp or local e is, if it is one we could put an allocation in
+    private static String var(Exp e){
+        if (e instanceof TEMP && !((TEMP)e).temp.toString().startsWith("%")){
+            return ((TEMP)e).temp.toString();
+        } else if (e instanceof MEM && ((MEM)e).exp instanceof BINOP && ((BINOP)((MEM)e).exp).binop == BINOP.MINUS
+                && ((BINOP)((MEM)e).exp).left instanceof TEMP
+                && ((TEMP)((BINOP)((MEM)e).exp).left).temp.toString().equals("%fp")
+                && ((BINOP)((MEM)e).exp).right instanceof CONST){
+            return "%fp-" + ((CONST)((BINOP)((MEM)e).exp).right).value;
+        }
+        return null;
+    }
+
+    private static boolean isAlloc(Exp e){
+        String name;
+        if (!(e instanceof CALL) || !(((CALL)e).func instanceof NAME) || ((CALL)e).args == null){
+            return false;
+        }
+        name = ((NAME)((CALL)e).func).label.toString();
+        return (name.equals("alloc_obj") && ((CALL)e).args.toList().size() == 2)
+                || (name.equals("alloc_array") && ((CALL)e).args.toList().size() == 1);
+    }
+
+    // new gives alloc_obj the layout of its class and the number of fields, new int[] gives alloc_array the size
+    // it just worked out plus one
+    private Site allocation(int i){
+        Stm s = statements.get(i), prev;
+        Exp size;
+        Site site = new Site();
+
+        if (!(s instanceof MOVE) || !(((MOVE)s).dst instanceof TEMP) || var(((MOVE)s).dst) == null
+                || !isAlloc(((MOVE)s).src)){
+            return null;
+        }
+        site.array = ((NAME)((CALL)((MOVE)s).src).func).label.toString().equals("alloc_array");
+        size = ((CALL)((MOVE)s).src).args.toList().get(site.array ? 0 : 1);
+        if (size instanceof CONST){
+            site.words = ((CONST)size).value;
+        } else if (size instanceof BINOP && ((BINOP)size).binop == BINOP.PLUS && ((BINOP)size).left instanceof TEMP
+                && ((BINOP)size).right instanceof CONST && i > 0 && (prev = statements.get(i - 1)) instanceof MOVE
+                && ((MOVE)prev).dst instanceof TEMP && ((MOVE)prev).src instanceof CONST
+                && ((TEMP)((MOVE)prev).dst).temp.equals(((TEMP)((BINOP)size).left).temp)){
+            site.words = ((CONST)((MOVE)prev).src).value + ((CONST)((BINOP)size).right).value;
+        } else {
+            return null;
+        }
+        if (site.words <= 0 || site.words > MAX_WORDS){
+            return null;
+        }
+        site.index = i;
+        site.root = var(((MOVE)s).dst);
+        return site;
+    }
+
+    // the temps and locals that only ever get copies of the allocation
+    private void holders(Site site){
+        boolean changed = true, copies;
+        site.holders.add(site.root);
+        while (changed){
+            changed = false;
+            for (String v: defs.keySet()){
+                if (site.holders.contains(v)){
+                    continue;
+                }
+                copies = true;
+                for (Exp src: defs.get(v)){
+                    copies = copies && var(src) != null && site.holders.contains(var(src));
+                }
+                if (copies){
+                    site.holders.add(v);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private Site holder(Exp e){
+        return var(e) == null ? null : holding.get(var(e));
+    }
+
+    // where the address a starts from, past anything added on to it
+    private static Exp base(Exp a){
+        while (a instanceof BINOP && ((BINOP)a).binop == BINOP.PLUS){
+            a = ((BINOP)a).left;
+        }
+        return a;
+    }
+
+    // a holder anywhere but as the base of an address, or moved into another holder, lets its allocation escape
+    private void scan(Stm s){
+        Site site;
+        if (s instanceof MOVE){
+            MOVE m = (MOVE)s;
+            site = holder(m.dst);
+            if (site != null && (holder(m.src) == site || (isAlloc(m.src) && var(m.dst).equals(site.root)))){
+                return;
+            }
+            if (m.dst instanceof MEM && var(m.dst) == null){
+                scanAddress(((MEM)m.dst).exp);
+            }
+            scan(m.src);
+        } else if (s instanceof EVAL){
+            scan(((EVAL)s).exp);
+        } else if (s instanceof CJUMP){
+            scan(((CJUMP)s).left);
+            scan(((CJUMP)s).right);
+        } else if (s instanceof JUMP){
+            scan(((JUMP)s).exp);
+        }
+    }
+
+    private void scan(Exp e){
+        if (holder(e) != null){
+            holder(e).escapes = true;
+        } else if (e instanceof MEM){
+            scanAddress(((MEM)e).exp);
+        } else if (e instanceof BINOP){
+            scan(((BINOP)e).left);
+            scan(((BINOP)e).right);
+        } else if (e instanceof CALL && ((CALL)e).args != null){
+            for (Exp arg: ((CALL)e).args.toList()){
+                scan(arg);
+            }
+        }
+    }
+
+    private void scanAddress(Exp a){
+        Site site = holder(base(a));
+        if (site == null){
+            scan(a);
+            return;
+        }
+        if (offset(a) == null || offset(a) < 0 || offset(a) >= 4 * site.words || offset(a) % 4 != 0){
+            site.constant = false;
+        } else {
+            site.offsets.add(offset(a));
+        }
+        for (; a instanceof BINOP && ((BINOP)a).binop == BINOP.PLUS; a = ((BINOP)a).left){
+            scan(((BINOP)a).right);
+        }
+    }
+
+    // how far past its base the address a is, if that's a constant
+    private static Integer offset(Exp a){
+        if (a instanceof BINOP && ((BINOP)a).binop == BINOP.PLUS && ((BINOP)a).right instanceof CONST
+                && !(((BINOP)a).left instanceof BINOP)){
+            return ((CONST)((BINOP)a).right).value;
+        }
+        return a instanceof BINOP ? null : 0;
+    }
+
+    // every time the allocation happens again, the holders other than its own temp still have the last one until
+    // they get copied into again. if any of them could be used before that, two allocations are alive at once and
+    // they can't share one place
+    private boolean stale(Site site){
+        ArrayList<HashSet<String>> in = new ArrayList();
+        HashSet<String> out;
+        boolean changed = true;
+        Stm s;
+
+        for (int i = 0; i <= statements.size(); i++){
+            in.add(new HashSet());
+        }
+        while (changed){
+            changed = false;
+            for (int i = 0; i < statements.size(); i++){
+                s = statements.get(i);
+                if (usesStale(s, in.get(i), site)){
+                    return true;
+                }
+                out = new HashSet(in.get(i));
+                if (i == site.index){
+                    out.addAll(site.holders);
+                    out.remove(site.root);
+                } else if (s instanceof MOVE && site.holders.contains(var(((MOVE)s).dst))){
+                    if (out.contains(var(((MOVE)s).src))){
+                        out.add(var(((MOVE)s).dst));
+                    } else {
+                        out.remove(var(((MOVE)s).dst));
+                    }
+                }
+                for (int next: successors(i)){
+                    changed = in.get(next).addAll(out) || changed;
+                }
+            }
+        }
+        return false;
+    }
+
+    private List<Integer> successors(int i){
+        ArrayList<Integer> next = new ArrayList();
+        Stm s = statements.get(i);
+        if (s instanceof JUMP){
+            for (NameOfLabel l: ((JUMP)s).targets){
+                if (labels.containsKey(l.toString())){
+                    next.add(labels.get(l.toString()));
+                }
+            }
+        } else if (s instanceof CJUMP){
+            for (NameOfLabel l: new NameOfLabel[]{ ((CJUMP)s).iftrue, ((CJUMP)s).iffalse }){
+                if (labels.containsKey(l.toString())){
+                    next.add(labels.get(l.toString()));
+                }
+            }
+        } else {
+            next.add(i + 1);
+        }
+        return next;
+    }
+
+    // does s load or store through a holder of site that might still have an older allocation?
+    private boolean usesStale(Stm s, HashSet<String> stale, Site site){
+        // copying an older allocation around is fine, as long as nothing looks inside of it
+        if (s instanceof MOVE && site.holders.contains(var(((MOVE)s).dst))){
+            return false;
+        } else if (s instanceof MOVE){
+            return (((MOVE)s).dst instanceof MEM && var(((MOVE)s).dst) == null
+                    && usesStale(((MEM)((MOVE)s).dst).exp, stale, site))
+                    || usesStale(((MOVE)s).src, stale, site);
+        } else if (s instanceof EVAL){
+            return usesStale(((EVAL)s).exp, stale, site);
+        } else if (s instanceof CJUMP){
+            return usesStale(((CJUMP)s).left, stale, site) || usesStale(((CJUMP)s).right, stale, site);
+        }
+        return false;
+    }
+
+    private boolean usesStale(Exp e, HashSet<String> stale, Site site){
+        if (var(e) != null && site.holders.contains(var(e))){
+            return stale.contains(var(e));
+        } else if (e instanceof MEM){
+            return usesStale(((MEM)e).exp, stale, site);
+        } else if (e instanceof BINOP){
+            return usesStale(((BINOP)e).left, stale, site) || usesStale(((BINOP)e).right, stale, site);
+        } else if (e instanceof CALL && ((CALL)e).args != null){
+            for (Exp arg: ((CALL)e).args.toList()){
+                if (usesStale(arg, stale, site)){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private List<Stm> rewrite(){
+        ArrayList<Stm> out = new ArrayList();
+        Site site;
+        Stm s;
+
+        for (int i = 0; i < statements.size(); i++){
+            s = statements.get(i);
+            site = s instanceof MOVE ? holder(((MOVE)s).dst) : null;
+            if (site != null && i == site.index){
+                // calloc gave back all zeros, so we have to as well
+                if (site.constant){
+                    for (int offset: site.offsets){
+                        out.add(new MOVE(field(site, offset), new CONST(0)));
+                    }
+                } else {
+                    out.add(new MOVE(((MOVE)s).dst, site.base));
+                    for (int w = 0; w < site.words; w++){
+                        out.add(new MOVE(new MEM(new BINOP(BINOP.PLUS, ((MOVE)s).dst, new CONST(4 * w))),
+                                new CONST(0)));
+                    }
+                }
+            } else if (site != null && site.constant){
+                // the holders themselves aren't needed once every word is a temp
+                continue;
+            } else if (s instanceof MOVE){
+                out.add(new MOVE(((MOVE)s).dst instanceof MEM && var(((MOVE)s).dst) == null
+                        ? rewriteMem((MEM)((MOVE)s).dst) : ((MOVE)s).dst, rewrite(((MOVE)s).src)));
+            } else if (s instanceof EVAL){
+                out.add(new EVAL(rewrite(((EVAL)s).exp)));
+            } else if (s instanceof CJUMP){
+                CJUMP cj = (CJUMP)s;
+                out.add(new CJUMP(cj.relop, rewrite(cj.left), rewrite(cj.right), cj.iftrue, cj.iffalse));
+            } else {
+                out.add(s);
+            }
+        }
+        return out;
+    }
+
+    private TEMP field(Site site, int offset){
+        if (!site.fields.containsKey(offset)){
+            site.fields.put(offset, new TEMP(new NameOfTemp(String.format("esc%03d", ++c))));
+        }
+        return site.fields.get(offset);
+    }
+
+    private Exp rewriteMem(MEM m){
+        Site site = holder(base(m.exp));
+        if (site != null && site.constant){
+            return field(site, offset(m.exp));
+        }
+        return new MEM(rewrite(m.exp));
+    }
+
+    private Exp rewrite(Exp e){
+        if (e instanceof MEM && var(e) == null){
+            return rewriteMem((MEM)e);
+        } else if (e instanceof BINOP){
+            return new BINOP(((BINOP)e).binop, rewrite(((BINOP)e).left), rewrite(((BINOP)e).right));
+        } else if (e instanceof CALL){
+            ArrayList<Exp> args = new ArrayList();
+            if (((CALL)e).args != null){
+                for (Exp arg: ((CALL)e).args.toList()){
+                    args.add(rewrite(arg));
+                }
+            }
+            return new CALL(((CALL)e).func, args);
+        }
+        return e;
+    }
+}
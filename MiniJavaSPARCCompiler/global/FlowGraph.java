@@ -0,0 +1,204 @@
+package global;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import assem.*;
+import tree.*;
+
+// control flow graph over the instructions of a single method, along with the liveness of every temp in it
+// every instruction gets its own node, so liveIn and liveOut can be looked up by the instruction's index
+public class FlowGraph {
+
+    // calls are allowed to trash the outgoing registers and the globals, so anything living across a call
+    // can't be kept in one of these
+    public static final String[] CALLER_SAVED = {
+            "%o0", "%o1", "%o2", "%o3", "%o4", "%o5", "%o7",
+            "%g1", "%g2", "%g3", "%g4", "%g5", "%g6", "%g7"
+    };
+
+    public final List<Instruction> instructions;
+    public final ArrayList<NameOfTemp> temps = new ArrayList();          // every temp we've seen, by index
+    public final HashMap<NameOfTemp, Integer> tempIndex = new HashMap(); // and the index of every temp
+
+    public int[][] defs, uses, succs;  // what each node defines, uses, and where it can go next
+    public boolean[] isMove;           // can the node be coalesced away?
+    public BitSet[] liveIn, liveOut;   // what temps are live coming in to and going out of each node
+
+    public FlowGraph(List<Instruction> instructions, Map<NameOfTemp, String> tempMap){
+        this.instructions = instructions;
+        int n = instructions.size();
+        defs = new int[n][];
+        uses = new int[n][];
+        succs = new int[n][];
+        isMove = new boolean[n];
+
+        buildNodes(tempMap);
+        buildEdges(tempMap);
+        computeLiveness();
+    }
+
+    public int indexOf(NameOfTemp t){
+        Integer i = tempIndex.get(t);
+        if (i == null){
+            i = temps.size();
+            temps.add(t);
+            tempIndex.put(t, i);
+        }
+        return i;
+    }
+
+    // the first word of the instruction, without any annul or prediction bits
+    public static String opcode(Instruction i, Map<NameOfTemp, String> tempMap){
+        if (i instanceof LabelInstruction || i instanceof Comment){
+            return "";
+        }
+        String[] parts = i.format(tempMap).trim().split("\\s+");
+        return parts[0].split(",")[0];
+    }
+
+    public static boolean isCall(String op){
+        return op.equals("call");
+    }
+
+    public static boolean isBranch(String op){
+        return op.startsWith("b") && !op.equals("bclr") && !op.equals("bset");
+    }
+
+    public static boolean isUnconditional(String op){
+        return op.equals("ba") || op.equals("b");
+    }
+
+    private int[] toIndices(List<NameOfTemp> ts, String[] extra){
+        ArrayList<Integer> found = new ArrayList();
+        if (ts != null){
+            for (NameOfTemp t: ts){
+                if (t != null && !found.contains(indexOf(t))){
+                    found.add(indexOf(t));
+                }
+            }
+        }
+        if (extra != null){
+            for (String r: extra){
+                if (!found.contains(indexOf(new NameOfTemp(r)))){
+                    found.add(indexOf(new NameOfTemp(r)));
+                }
+            }
+        }
+        int[] ret = new int[found.size()];
+        for (int i = 0; i < ret.length; i++){
+            ret[i] = found.get(i);
+        }
+        return ret;
+    }
+
+    private void buildNodes(Map<NameOfTemp, String> tempMap){
+        Instruction i;
+        String op;
+        for (int n = 0; n < instructions.size(); n++){
+            i = instructions.get(n);
+            op = opcode(i, tempMap);
+            // a call clobbers every caller saved register
+            defs[n] = toIndices(i.def(), isCall(op) ? CALLER_SAVED : null);
+            uses[n] = toIndices(i.use(), null);
+            isMove[n] = i instanceof MoveInstruction && defs[n].length == 1 && uses[n].length == 1;
+        }
+    }
+
+    // SPARC branches and calls have a delay slot, so the instruction right after them runs before we get to
+    // the target: the branch flows into its delay slot, and the delay slot flows on to wherever we are going
+    private void buildEdges(Map<NameOfTemp, String> tempMap){
+        HashMap<String, Integer> labels = new HashMap();
+        Instruction i;
+        String op;
+        ArrayList<Integer> next;
+        int n = instructions.size();
+
+        for (int l = 0; l < n; l++){
+            if (instructions.get(l) instanceof LabelInstruction){
+                labels.put(((LabelInstruction)instructions.get(l)).label.toString(), l);
+            }
+        }
+
+        for (int s = 0; s < n; s++){
+            succs[s] = new int[0];
+        }
+
+        for (int s = 0; s < n; s++){
+            i = instructions.get(s);
+            op = opcode(i, tempMap);
+            next = new ArrayList();
+
+            if (isBranch(op) || isCall(op)){
+                int slot = s + 1;
+                if (slot < n){
+                    succs[s] = new int[]{slot};
+                } else {
+                    slot = s;
+                }
+                if (isBranch(op) && i.jumps() != null){
+                    for (NameOfLabel target: i.jumps()){
+                        // jumping out of the method (to the epilogue) leads nowhere we care about
+                        if (labels.containsKey(target.toString())){
+                            next.add(labels.get(target.toString()));
+                        }
+                    }
+                }
+                if (!isUnconditional(op) && slot + 1 < n){
+                    next.add(slot + 1);
+                }
+                succs[slot] = toArray(next);
+                s = slot;
+            } else if (s + 1 < n){
+                succs[s] = new int[]{s + 1};
+            }
+        }
+    }
+
+    private static int[] toArray(List<Integer> l){
+        int[] ret = new int[l.size()];
+        for (int i = 0; i < ret.length; i++){
+            ret[i] = l.get(i);
+        }
+        return ret;
+    }
+
+    // standard backwards dataflow: in = use + (out - def), out = union of in over successors
+    // we go over the nodes in reverse order since that converges the quickest
+    private void computeLiveness(){
+        int n = instructions.size();
+        boolean changed = true;
+        BitSet in, out;
+        liveIn = new BitSet[n];
+        liveOut = new BitSet[n];
+        for (int i = 0; i < n; i++){
+            liveIn[i] = new BitSet();
+            liveOut[i] = new BitSet();
+        }
+
+        while (changed){
+            changed = false;
+            for (int i = n - 1; i >= 0; i--){
+                out = new BitSet();
+                for (int s: succs[i]){
+                    out.or(liveIn[s]);
+                }
+                in = (BitSet) out.clone();
+                for (int d: defs[i]){
+                    in.clear(d);
+                }
+                for (int u: uses[i]){
+                    in.set(u);
+                }
+                if (!in.equals(liveIn[i]) || !out.equals(liveOut[i])){
+                    liveIn[i] = in;
+                    liveOut[i] = out;
+                    changed = true;
+                }
+            }
+        }
+    }
+}
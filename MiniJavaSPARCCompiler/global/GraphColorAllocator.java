@@ -0,0 +1,446 @@
+package global;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Stack;
+
+import assem.*;
+import tree.*;
+
+// graph coloring register allocation with iterated register coalescing (George and Appel)
+// colors the temps of one method with the registers MaximalMunch is allowed to hand out, and tells us which
+// temps have to live on the stack instead if we ran out of colors
+public class GraphColorAllocator extends RegisterAllocator {
+
+    private int K = REGISTERS.length;  // how many colors we have to go around
+    private static final int INFINITE = Integer.MAX_VALUE / 2;
+
+    // what state is each node in?
+    private static final int PRECOLORED = 0, INITIAL = 1, SIMPLIFY = 2, FREEZE = 3, SPILL = 4,
+                             SPILLED = 5, COALESCED = 6, COLORED = 7, SELECT = 8, IGNORED = 9;
+    // what state is each move in?
+    private static final int M_COALESCED = 0, M_CONSTRAINED = 1, M_FROZEN = 2, M_WORKLIST = 3, M_ACTIVE = 4;
+
+    private FlowGraph flow;
+    private int nodes;
+    private int[] state, degree, alias, color, cost;
+    private BitSet[] adjSet;
+    private ArrayList<Integer>[] adjList, moveList;
+    private ArrayList<int[]> moves = new ArrayList();   // {dst, src} of each move
+    private int[] moveState;
+
+    private LinkedHashSet<Integer> simplifyWorklist = new LinkedHashSet(), freezeWorklist = new LinkedHashSet(),
+                                   spillWorklist = new LinkedHashSet(), worklistMoves = new LinkedHashSet(),
+                                   activeMoves = new LinkedHashSet();
+    private Stack<Integer> selectStack = new Stack();
+    private ArrayList<Integer> spilledNodes = new ArrayList();
+
+    public int coalescedMoves = 0;   // how many moves we got rid of in the last allocation
+
+    public String getName(){ return "graph coloring"; }
+
+    public List<NameOfTemp> allocate(List<Instruction> instructions, HashMap<NameOfTemp, String> tempMap){
+        ArrayList<NameOfTemp> spills = new ArrayList();
+
+        init(instructions, tempMap);
+        build();
+        makeWorklist();
+
+        while (!simplifyWorklist.isEmpty() || !worklistMoves.isEmpty() ||
+               !freezeWorklist.isEmpty() || !spillWorklist.isEmpty()){
+            if (!simplifyWorklist.isEmpty()){
+                simplify();
+            } else if (!worklistMoves.isEmpty()){
+                coalesce();
+            } else if (!freezeWorklist.isEmpty()){
+                freeze();
+            } else {
+                selectSpill();
+            }
+        }
+        assignColors();
+
+        if (!spilledNodes.isEmpty()){
+            for (int n: spilledNodes){
+                spills.add(flow.temps.get(n));
+            }
+            return spills;
+        }
+
+        for (int n = 0; n < nodes; n++){
+            if (state[n] == COLORED || state[n] == COALESCED){
+                tempMap.put(flow.temps.get(n), REGISTERS[color[getAlias(n)]]);
+            }
+        }
+        return spills;
+    }
+
+    private void init(List<Instruction> instructions, HashMap<NameOfTemp, String> tempMap){
+        HashMap<String, Integer> registerColor = new HashMap();
+        String reg;
+
+        K = available();
+        for (int r = 0; r < REGISTERS.length; r++){
+            registerColor.put(REGISTERS[r], r);
+        }
+
+        flow = new FlowGraph(instructions, tempMap);
+        nodes = flow.temps.size();
+        state = new int[nodes];
+        degree = new int[nodes];
+        alias = new int[nodes];
+        color = new int[nodes];
+        cost = new int[nodes];
+        adjSet = new BitSet[nodes];
+        adjList = new ArrayList[nodes];
+        moveList = new ArrayList[nodes];
+        moves = new ArrayList();
+        simplifyWorklist.clear();
+        freezeWorklist.clear();
+        spillWorklist.clear();
+        worklistMoves.clear();
+        activeMoves.clear();
+        selectStack.clear();
+        spilledNodes.clear();
+        coalescedMoves = 0;
+
+        for (int n = 0; n < nodes; n++){
+            adjSet[n] = new BitSet();
+            adjList[n] = new ArrayList();
+            moveList[n] = new ArrayList();
+            alias[n] = n;
+            reg = tempMap.get(flow.temps.get(n));
+            if (reg == null){
+                state[n] = INITIAL;
+            } else if (registerColor.containsKey(reg)){
+                // registers we hand out are precolored and interfere with everything live around them
+                state[n] = PRECOLORED;
+                color[n] = registerColor.get(reg);
+                degree[n] = INFINITE;
+            } else {
+                // %i, %fp and the like are never handed out, so they can't conflict with anything
+                state[n] = IGNORED;
+            }
+        }
+    }
+
+    private boolean inGraph(int n){
+        return state[n] != IGNORED;
+    }
+
+    private void addEdge(int u, int v){
+        if (u != v && inGraph(u) && inGraph(v) && !adjSet[u].get(v)){
+            adjSet[u].set(v);
+            adjSet[v].set(u);
+            if (state[u] != PRECOLORED){
+                adjList[u].add(v);
+                degree[u]++;
+            }
+            if (state[v] != PRECOLORED){
+                adjList[v].add(u);
+                degree[v]++;
+            }
+        }
+    }
+
+    private void build(){
+        BitSet live;
+        int m;
+
+        for (int i = 0; i < flow.instructions.size(); i++){
+            live = (BitSet) flow.liveOut[i].clone();
+            for (int u: flow.uses[i]){
+                cost[u]++;
+            }
+            for (int d: flow.defs[i]){
+                cost[d]++;
+            }
+
+            if (flow.isMove[i] && inGraph(flow.defs[i][0]) && inGraph(flow.uses[i][0])){
+                // the source and destination of a move don't interfere just because of the move
+                live.clear(flow.uses[i][0]);
+                m = moves.size();
+                moves.add(new int[]{flow.defs[i][0], flow.uses[i][0]});
+                moveList[flow.defs[i][0]].add(m);
+                moveList[flow.uses[i][0]].add(m);
+                worklistMoves.add(m);
+            }
+
+            for (int d: flow.defs[i]){
+                for (int l = live.nextSetBit(0); l >= 0; l = live.nextSetBit(l + 1)){
+                    addEdge(l, d);
+                }
+            }
+        }
+
+        moveState = new int[moves.size()];
+        for (int mv: worklistMoves){
+            moveState[mv] = M_WORKLIST;
+        }
+
+        // temps made to reload spills only live for an instruction, so spilling them again gets us nowhere
+        for (int n = 0; n < nodes; n++){
+            if (flow.temps.get(n).toString().startsWith(MaximalMunch.SPILL_PREFIX)){
+                cost[n] = INFINITE;
+            }
+        }
+    }
+
+    private ArrayList<Integer> adjacent(int n){
+        ArrayList<Integer> ret = new ArrayList();
+        for (int a: adjList[n]){
+            if (state[a] != SELECT && state[a] != COALESCED){
+                ret.add(a);
+            }
+        }
+        return ret;
+    }
+
+    private ArrayList<Integer> nodeMoves(int n){
+        ArrayList<Integer> ret = new ArrayList();
+        for (int m: moveList[n]){
+            if (moveState[m] == M_ACTIVE || moveState[m] == M_WORKLIST){
+                ret.add(m);
+            }
+        }
+        return ret;
+    }
+
+    private boolean moveRelated(int n){
+        return !nodeMoves(n).isEmpty();
+    }
+
+    private void makeWorklist(){
+        for (int n = 0; n < nodes; n++){
+            if (state[n] == INITIAL){
+                if (degree[n] >= K){
+                    state[n] = SPILL;
+                    spillWorklist.add(n);
+                } else if (moveRelated(n)){
+                    state[n] = FREEZE;
+                    freezeWorklist.add(n);
+                } else {
+                    state[n] = SIMPLIFY;
+                    simplifyWorklist.add(n);
+                }
+            }
+        }
+    }
+
+    private void simplify(){
+        int n = simplifyWorklist.iterator().next();
+        simplifyWorklist.remove(n);
+        state[n] = SELECT;
+        selectStack.push(n);
+        for (int m: adjacent(n)){
+            decrementDegree(m);
+        }
+    }
+
+    private void decrementDegree(int m){
+        int d = degree[m];
+        if (state[m] == PRECOLORED){
+            return;
+        }
+        degree[m] = d - 1;
+        if (d == K){
+            ArrayList<Integer> adj = adjacent(m);
+            adj.add(m);
+            enableMoves(adj);
+            spillWorklist.remove(m);
+            if (moveRelated(m)){
+                state[m] = FREEZE;
+                freezeWorklist.add(m);
+            } else {
+                state[m] = SIMPLIFY;
+                simplifyWorklist.add(m);
+            }
+        }
+    }
+
+    private void enableMoves(List<Integer> nodes){
+        for (int n: nodes){
+            for (int m: nodeMoves(n)){
+                if (moveState[m] == M_ACTIVE){
+                    activeMoves.remove(m);
+                    moveState[m] = M_WORKLIST;
+                    worklistMoves.add(m);
+                }
+            }
+        }
+    }
+
+    private void coalesce(){
+        int m = worklistMoves.iterator().next();
+        int x = getAlias(moves.get(m)[0]), y = getAlias(moves.get(m)[1]);
+        int u, v;
+        worklistMoves.remove(m);
+
+        // if either is precolored, make sure it's u
+        if (state[y] == PRECOLORED){
+            u = y; v = x;
+        } else {
+            u = x; v = y;
+        }
+
+        if (u == v){
+            moveState[m] = M_COALESCED;
+            coalescedMoves++;
+            addWorkList(u);
+        } else if (state[v] == PRECOLORED || adjSet[u].get(v)){
+            moveState[m] = M_CONSTRAINED;
+            addWorkList(u);
+            addWorkList(v);
+        } else if ((state[u] == PRECOLORED && allOk(adjacent(v), u)) ||
+                   (state[u] != PRECOLORED && conservative(adjacent(u), adjacent(v)))){
+            moveState[m] = M_COALESCED;
+            coalescedMoves++;
+            combine(u, v);
+            addWorkList(u);
+        } else {
+            moveState[m] = M_ACTIVE;
+            activeMoves.add(m);
+        }
+    }
+
+    private void addWorkList(int u){
+        if (state[u] != PRECOLORED && !moveRelated(u) && degree[u] < K){
+            freezeWorklist.remove(u);
+            state[u] = SIMPLIFY;
+            simplifyWorklist.add(u);
+        }
+    }
+
+    // George's test for coalescing with a precolored node
+    private boolean allOk(List<Integer> ts, int r){
+        for (int t: ts){
+            if (!(degree[t] < K || state[t] == PRECOLORED || adjSet[t].get(r))){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Briggs' test: coalescing is safe if the result has fewer than K neighbors of significant degree
+    private boolean conservative(List<Integer> a, List<Integer> b){
+        HashSet<Integer> all = new HashSet(a);
+        int k = 0;
+        all.addAll(b);
+        for (int n: all){
+            if (degree[n] >= K){
+                k++;
+            }
+        }
+        return k < K;
+    }
+
+    private int getAlias(int n){
+        while (state[n] == COALESCED){
+            n = alias[n];
+        }
+        return n;
+    }
+
+    private void combine(int u, int v){
+        if (state[v] == FREEZE){
+            freezeWorklist.remove(v);
+        } else {
+            spillWorklist.remove(v);
+        }
+        state[v] = COALESCED;
+        alias[v] = u;
+        moveList[u].addAll(moveList[v]);
+        cost[u] = Math.min(INFINITE, cost[u] + cost[v]);
+        ArrayList<Integer> vn = new ArrayList();
+        vn.add(v);
+        enableMoves(vn);
+        for (int t: adjacent(v)){
+            addEdge(t, u);
+            decrementDegree(t);
+        }
+        if (degree[u] >= K && state[u] == FREEZE){
+            freezeWorklist.remove(u);
+            state[u] = SPILL;
+            spillWorklist.add(u);
+        }
+    }
+
+    private void freeze(){
+        int u = freezeWorklist.iterator().next();
+        freezeWorklist.remove(u);
+        state[u] = SIMPLIFY;
+        simplifyWorklist.add(u);
+        freezeMoves(u);
+    }
+
+    private void freezeMoves(int u){
+        int x, y, v;
+        for (int m: nodeMoves(u)){
+            x = moves.get(m)[0];
+            y = moves.get(m)[1];
+            if (getAlias(y) == getAlias(u)){
+                v = getAlias(x);
+            } else {
+                v = getAlias(y);
+            }
+            activeMoves.remove(m);
+            moveState[m] = M_FROZEN;
+            if (state[v] == FREEZE && !moveRelated(v)){
+                freezeWorklist.remove(v);
+                state[v] = SIMPLIFY;
+                simplifyWorklist.add(v);
+            }
+        }
+    }
+
+    // spill whatever gets in the way of the most, for the least number of uses
+    private void selectSpill(){
+        int best = -1;
+        double bestScore = -1, score;
+        for (int n: spillWorklist){
+            score = cost[n] >= INFINITE ? 0 : (double) degree[n] / (cost[n] + 1);
+            if (best == -1 || score > bestScore){
+                best = n;
+                bestScore = score;
+            }
+        }
+        spillWorklist.remove(best);
+        state[best] = SIMPLIFY;
+        simplifyWorklist.add(best);
+        freezeMoves(best);
+    }
+
+    private void assignColors(){
+        int n;
+        BitSet okColors;
+        while (!selectStack.isEmpty()){
+            n = selectStack.pop();
+            okColors = new BitSet();
+            for (int r = 0; r < REGISTERS.length; r++){
+                okColors.set(r, !reserved[r]);
+            }
+            for (int w: adjList[n]){
+                int a = getAlias(w);
+                if (state[a] == COLORED || state[a] == PRECOLORED){
+                    okColors.clear(color[a]);
+                }
+            }
+            if (okColors.isEmpty()){
+                state[n] = SPILLED;
+                spilledNodes.add(n);
+            } else {
+                state[n] = COLORED;
+                color[n] = okColors.nextSetBit(0);
+            }
+        }
+        for (n = 0; n < nodes; n++){
+            if (state[n] == COALESCED){
+                color[n] = color[getAlias(n)];
+            }
+        }
+    }
+}
@@ -5,21 +5,22 @@ import global.IRTree.*;
 import tree.*;
 
 import java.io.PrintWriter;
-import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ListIterator;
-import java.util.Set;
 
 public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     private String filename;
     private PrintWriter pw;
     private boolean verbose;
+    private boolean rotateLoops = false;    // lower while loops as a guarded do-while?
 
     // holds our lookup data
-    private HashMap<String, HashMap> lookupTable;
+    private SymbolTable lookupTable;
+    private Annotations annotations;
     private String currentClass, currentMethod;
-    private HashMap<String, HashMap> classScope, methodScope;
+    private ClassSymbol classScope;
+    private MethodSymbol methodScope;
 
     // holds all the fragments to return later
     private ArrayList<Stm> fragments = new ArrayList();
@@ -27,163 +28,55 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     // we shouldn't find errors at this point, but just to be sure
     private int errors = 0;
 
-    public IRTranslator (String fileName, PrintWriter pw, HashMap<String, HashMap> lookup)
-        { filename = fileName; this.pw = pw; verbose = true; lookupTable = lookup; }
+    public IRTranslator (String fileName, PrintWriter pw, SymbolTable lookup, Annotations checked)
+        { filename = fileName; this.pw = pw; verbose = true; lookupTable = lookup; annotations = checked; }
 
-    public IRTranslator (String fileName, HashMap<String, HashMap> lookup)
-        { filename = fileName; lookupTable = lookup; pw = null; verbose=false; }
+    public IRTranslator (String fileName, SymbolTable lookup, Annotations checked)
+        { filename = fileName; lookupTable = lookup; annotations = checked; pw = null; verbose=false; }
 
     public int getErrors(){ return errors; }
 
+    public void setRotateLoops(boolean rotate){ rotateLoops = rotate; }
+
     // answers where we can find our variable in memory
-    private LazyIRTree getVarLoc(String varName){
+    // the checker already worked out which declaration each use of a name means, so all that's left is its slot
+    private LazyIRTree getVarLoc(VarSymbol var, String varName){
         LazyIRTree ret = null;
-        HashMap<String, HashMap> scope = null;
-        HashMap<String, Object> methodFind = null;
-        int loc = 0;
-
-        // if there are fields, search there
-        if (classScope.containsKey("$fields")){
-            scope = classScope.get("$fields");
-            if (scope.containsKey(varName)){
-                // if its a field, we go back to where our object is
-                loc = (int)scope.get(varName).get("$fieldloc");
-                ret = new IRVariable(new BINOP(BINOP.PLUS, new TEMP("%i0"),
-                        new CONST(loc * 4)));
-            }
-        }
-
-        // prioritize using locals and args before fields
-        methodFind = findVarInMethod(varName);
-        if (methodFind != null){
-            if (methodFind.containsKey("$argloc")){
-                // if it is an incoming argument
-                loc = (int)methodFind.get("$argloc");
-                ret = new IRVariable(new TEMP(String.format("%%i%d", loc)));
-            } else if (methodFind.containsKey("$locloc")) {
-                // if it is a local declaration, we move onto the heap
-                loc = (int)methodFind.get("$locloc");
-                ret = new IRVariable(new BINOP(BINOP.MINUS, new TEMP("%fp"), new CONST(4 * loc)));
-            }
-        }
 
-        if (ret == null){
+        if (var == null){
             System.err.printf("Could not find declaration of %s in class %s, method %s\n", varName, currentClass, currentMethod);
             errors++;
+        } else if (var.kind == VarSymbol.FIELD){
+            // if its a field, we go back to where our object is
+            ret = new IRVariable(new BINOP(BINOP.PLUS, new TEMP("%i0"), new CONST(var.offset)));
+        } else if (var.kind == VarSymbol.ARG){
+            // if it is an incoming argument
+            ret = new IRVariable(new TEMP(String.format("%%i%d", var.slot)));
+        } else {
+            // if it is a local declaration, it lives in our frame
+            ret = new IRVariable(new BINOP(BINOP.MINUS, new TEMP("%fp"), new CONST(-var.offset)));
         }
 
         return ret;
     }
 
-    private HashMap<String, Object> getVarInMethod(String varName){
-        HashMap<String, Object> ret = null, rTemp;
-        HashMap<String, HashMap> scope = null;
-        int loc = 0;
-
-        // check our fields first
-        if (classScope.containsKey("$fields")){
-            scope = classScope.get("$fields");
-            if (scope.containsKey(varName)){
-                ret = scope.get(varName);
-            }
-        }
-
-        // we prioritize using args and locals over fields, and args and locals will never have the same name
-        rTemp = findVarInMethod(varName);
-        if (rTemp != null){
-            ret = rTemp;
-        }
-
-        return ret;
-    }
-
-    private HashMap<String, Object> findVarInMethod(String varName){
-        return findVarInMethod(varName, methodScope);
-    }
-
-    private HashMap<String, Object> findVarInMethod(String varName, HashMap<String, HashMap> current){
-        return current.get(varName);
-    }
-
-
     private void SendDebugMessage(String message){
         if (verbose){
             pw.print(message);
         }
     }
 
-    private Type stringToType(String s){ return stringToType(s, 0, 0); }
-
-    private Type stringToType(String s, int l, int c){
-        if(s.equals("int")){
-            return Type.THE_INTEGER_TYPE;
-        } else if (s.equals("int[]")){
-            return Type.THE_INT_ARRAY_TYPE;
-        } else if (s.equals("boolean")){
-            return Type.THE_BOOLEAN_TYPE;
-        } else if (s.equals("void")){
-            return Type.THE_VOID_TYPE;
-        } else {
-            return new IdentifierType(l, c, s);
+    // only bothers to format the message if anyone is going to read it
+    private void SendDebugMessage(String format, Object... args){
+        if (verbose){
+            pw.print(String.format(format, args));
         }
     }
 
+    // LookupChecker has already typed every expression we could be handed
     private Type getTypeOfExpression(Expression e){
-        String idType;
-        Call call;
-        Type originT;
-        HashMap<String, HashMap> scope;
-        HashMap<String, Object> var;
-        Set<String> expectedArgs;
-
-        // handle the integer types
-        if (e instanceof IntegerLiteral || e instanceof ArrayLength || e instanceof ArrayLookup ||
-            e instanceof Plus || e instanceof Minus || e instanceof Times ){
-            return Type.THE_INTEGER_TYPE;
-        // and the booleans
-        } else if (e instanceof And || e instanceof LessThan || e instanceof True || e instanceof False ||
-                   e instanceof False || e instanceof Not){
-            return Type.THE_BOOLEAN_TYPE;
-        // and the int array
-        } else if (e instanceof NewArray) {
-            return Type.THE_INT_ARRAY_TYPE;
-        // and the new object
-        } else if (e instanceof NewObject){
-            return new IdentifierType(e.lineNumber, e.columnNumber, ((NewObject) e).i.toString());
-        // what is the type of the variable we are calling?
-        } else if (e instanceof IdentifierExp){
-            idType = (String) getVarInMethod(((IdentifierExp) e).s).get("$type");
-            return stringToType(idType, e.lineNumber, e.columnNumber);
-        // we're keeping track of what class we're in, so this is pretty easy
-        } else if (e instanceof This){
-            return new IdentifierType(e.lineNumber, e.columnNumber, currentClass);
-        // we may have multiple return types for the same name of method
-        // so we have to look for the return type, but first we have to find what type our origin is
-        } else if (e instanceof Call){
-            call = (Call)e;
-
-            originT = getTypeOfExpression(call.e);
-            idType = originT.toString();
-            scope = lookupTable.get(idType);
-
-            if (!(originT instanceof IdentifierType)){
-                System.err.printf("filename=%s:%03d:%03d -- Call must have Object type, found %s\n",
-                        filename, e.lineNumber, e.columnNumber, idType);
-                errors++;
-            } else {
-                scope = scope.get(call.i.s);
-                for (Expression exp: call.el){
-                    idType = getTypeOfExpression(exp).toString();
-                    scope = scope.get(idType);
-                }
-                scope = scope.get("$end");
-                return stringToType((String) scope.get("$info").get("$type"));
-            }
-
-            return Type.THE_VOID_TYPE;
-        } else{
-            return Type.THE_VOID_TYPE;
-        }
+        Type t = annotations.type(e);
+        return t == null ? Type.THE_VOID_TYPE : t;
     }
 
     public ArrayList<Stm> getFragments(final Program program){
@@ -215,12 +108,11 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
         n.nameOfCommandLineArgs.accept(this);
 
         currentClass = n.nameOfMainClass.s;
-        classScope = lookupTable.get(currentClass);
+        classScope = lookupTable.lookup(currentClass);
         currentMethod = "main";
-        methodScope = ((HashMap<String, HashMap>) classScope.get(currentMethod).get("String")).get("$end");
+        methodScope = classScope.overloads(currentMethod)[0];
 
-        method = new IRMethod(currentClass, currentMethod,
-                (String) methodScope.get("$info").get("$declnum"), n.body.accept(this));
+        method = new IRMethod(currentClass, currentMethod, methodScope.number, n.body.accept(this));
         // statement:  body of main
 
 
@@ -230,11 +122,11 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
 
     // Subcomponents of SimpleClassDecl: Identifier i; List<FieldDecl> vl; List<MethodDecl> ml;
     public LazyIRTree visit (final SimpleClassDecl n) {
-        SendDebugMessage(String.format("Entering SimpleClassDecl for %s...\n", n.i.s));
+        SendDebugMessage("Entering SimpleClassDecl for %s...\n", n.i.s);
         n.i.accept (this);
 
         currentClass = n.i.s;
-        classScope = lookupTable.get(currentClass);
+        classScope = lookupTable.lookup(currentClass);
 
         for (FieldDecl v: n.fields){
             v.accept (this).asExp();
@@ -247,19 +139,19 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
         classScope = null;
 
         // Does end with a newline
-        SendDebugMessage(String.format("Exiting SimpleClassDecl for %s...\n", n.i.s));
+        SendDebugMessage("Exiting SimpleClassDecl for %s...\n", n.i.s);
         return new IRNull();
     }
 
     // Subcomponents of ExtendingClassDecl: Identifier i, j; List<FieldDecl> vl; List<MethodDecl> ml;
     public LazyIRTree visit (final ExtendingClassDecl n) {
-        SendDebugMessage(String.format("Entering ExtendingClassDecl for %s @ %03d:%03d...\n",
-                n.i.s, n.i.lineNumber, n.i.columnNumber));
+        SendDebugMessage("Entering ExtendingClassDecl for %s @ %03d:%03d...\n",
+                n.i.s, n.i.lineNumber, n.i.columnNumber);
         n.i.accept (this);
         n.j.accept (this);
 
         currentClass = n.i.s;
-        classScope = lookupTable.get(currentClass);
+        classScope = lookupTable.lookup(currentClass);
 
         for (final FieldDecl v: n.fields) {
             v.accept(this);
@@ -269,37 +161,35 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
         currentClass = null;
         classScope = null;
 
-        SendDebugMessage(String.format("Exiting ExtendingClassDecl for %s @ %03d:%03d...\n",
-                n.i.s, n.i.lineNumber, n.i.columnNumber));
+        SendDebugMessage("Exiting ExtendingClassDecl for %s @ %03d:%03d...\n",
+                n.i.s, n.i.lineNumber, n.i.columnNumber);
         return new IRNull();
     }
 
     // Subcomponents of MethodDecl:
     // Type t; Identifier i; List<FormalDecl> fl; List<LocalDecl> locals; List<Statement>t sl; Expression e;
     public LazyIRTree visit (final MethodDecl n) {
-        SendDebugMessage(String.format("Entering MethodDecl for %s @ %03d:%03d...\n",
-                n.i.s, n.i.lineNumber, n.i.columnNumber));
+        SendDebugMessage("Entering MethodDecl for %s @ %03d:%03d...\n",
+                n.i.s, n.i.lineNumber, n.i.columnNumber);
 
         int n_formal = 0;
         int loc_local= 0;
         LazyIRTree statements = null;
         Statement s = null;
         ListIterator<Statement> slIterator = n.sl.listIterator(n.sl.size());
-        String methodNum;
-        HashMap<String, HashMap> methodInfo;
+        int[] argTypes = new int[n.formals.size()];
+        int i = 0;
 
         n.i.accept(this);
 
         currentMethod = n.i.s;
-        methodScope = classScope.get(currentMethod);
 
         // visit our formals and determine what method declaration in particular we are looking at
         for (FormalDecl f: n.formals){
             f.accept(this);
-            methodScope = methodScope.get(f.t.toString());
+            argTypes[i++] = lookupTable.typeId(f.t);
         }
-        methodScope = methodScope.get("$end");
-        methodNum = (String) methodScope.get("$info").get("$declnum");
+        methodScope = classScope.resolve(currentMethod, argTypes);
 
         // we visit our locals
         for (final LocalDecl v: n.locals) {
@@ -314,105 +204,105 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
             statements = new IRStatementBlock(s.accept(this), statements);
         }
 
-        statements = new IRMethod(currentClass, currentMethod, methodNum, statements);
+        statements = new IRMethod(currentClass, currentMethod, methodScope.number, statements);
 
         currentMethod = null;
         methodScope = null;
 
-        SendDebugMessage(String.format("Exiting MethodDecl for %s @ %03d:%03d...\n",
-                n.i.s, n.i.lineNumber, n.i.columnNumber));
+        SendDebugMessage("Exiting MethodDecl for %s @ %03d:%03d...\n",
+                n.i.s, n.i.lineNumber, n.i.columnNumber);
         return statements;
     }
 
     public LazyIRTree visit (FieldDecl n) {
-        SendDebugMessage(String.format("Entering MethodDecl for %s @ %03d:%03d...\n",
-                n.i.s, n.i.lineNumber, n.i.columnNumber));
+        SendDebugMessage("Entering MethodDecl for %s @ %03d:%03d...\n",
+                n.i.s, n.i.lineNumber, n.i.columnNumber);
 
         n.i.accept(this);
         n.t.accept(this);
 
-        SendDebugMessage(String.format("Exiting FieldDecl for %s @ %03d:%03d...\n",
-                n.i.s, n.i.lineNumber, n.i.columnNumber));
+        SendDebugMessage("Exiting FieldDecl for %s @ %03d:%03d...\n",
+                n.i.s, n.i.lineNumber, n.i.columnNumber);
         return new IRNull();
     }
 
     public LazyIRTree visit (LocalDecl n) {
-        SendDebugMessage(String.format("Entering LocalDecl for %s @ %03d:%03d...\n",
-                n.i.s, n.i.lineNumber, n.i.columnNumber));
+        SendDebugMessage("Entering LocalDecl for %s @ %03d:%03d...\n",
+                n.i.s, n.i.lineNumber, n.i.columnNumber);
 
         n.i.accept(this);
         n.t.accept(this);
 
-        SendDebugMessage(String.format("Exiting LocalDecl for %s @ %03d:%03d...\n",
-                n.i.s, n.i.lineNumber, n.i.columnNumber));
+        SendDebugMessage("Exiting LocalDecl for %s @ %03d:%03d...\n",
+                n.i.s, n.i.lineNumber, n.i.columnNumber);
 
         return new IRNull();
     }
 
     // Subcomponents of FormalDecl:  Type t; Identifier i;
     public LazyIRTree visit (FormalDecl n) {
-        SendDebugMessage(String.format("Entering FormalDecl for %s @ %03d:%03d...\n",
-                n.i.s, n.i.lineNumber, n.i.columnNumber));
+        SendDebugMessage("Entering FormalDecl for %s @ %03d:%03d...\n",
+                n.i.s, n.i.lineNumber, n.i.columnNumber);
 
         n.i.accept(this);
         n.t.accept(this);
 
-        SendDebugMessage(String.format("Exiting FormalDecl for %s @ %03d:%03d...\n",
-                n.i.s, n.i.lineNumber, n.i.columnNumber));
+        SendDebugMessage("Exiting FormalDecl for %s @ %03d:%03d...\n",
+                n.i.s, n.i.lineNumber, n.i.columnNumber);
 
         return new IRNull();
     }
 
     public LazyIRTree visit (IntArrayType n) {
-        SendDebugMessage(String.format("Entering int[] @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering int[] @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
-        SendDebugMessage(String.format("Exiting int[] @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting int[] @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
         return new IRNull();
     }
 
     public LazyIRTree visit (BooleanType n) {
-        SendDebugMessage(String.format("Entering bool @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering bool @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
-        SendDebugMessage(String.format("Exiting bool @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting bool @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
         return new IRNull();
     }
 
     public LazyIRTree visit (IntegerType n) {
-        SendDebugMessage(String.format("Entering int @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering int @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
-        SendDebugMessage(String.format("Exiting int @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting int @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
         return new IRNull();
     }
 
     public LazyIRTree visit (VoidType n) {
-        SendDebugMessage(String.format("Entering void @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering void @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
-        SendDebugMessage(String.format("Exiting void @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting void @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
         return new IRNull();
     }
 
     // String nameOfType;
     public LazyIRTree visit (IdentifierType n) {
-        SendDebugMessage(String.format("Entering type %s @ %03d:%03d...\n",
-                n.nameOfType, n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering type %s @ %03d:%03d...\n",
+                n.nameOfType, n.lineNumber, n.columnNumber);
 
-        SendDebugMessage(String.format("Exiting type %s @ %03d:%03d...\n",
-                n.nameOfType, n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting type %s @ %03d:%03d...\n",
+                n.nameOfType, n.lineNumber, n.columnNumber);
         return new IRNull();
     }
 
     // Subcomponents of Block statement:  StatementList sl;
     public LazyIRTree visit (final Block n) {
-        SendDebugMessage(String.format("Entering Block @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering Block @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         ListIterator<Statement> sIterator = n.sl.listIterator(n.sl.size());
         int numStms;
@@ -428,8 +318,8 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
             retSeq = new IRNull();
         }
 
-        SendDebugMessage(String.format("Exiting Block @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting Block @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         return retSeq;
     }
@@ -438,13 +328,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (final If n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering If statement @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering If statement @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         ret = new IRIfThenElse(n.e.accept(this), n.s1.accept(this), n.s2.accept(this));
 
-        SendDebugMessage(String.format("Exiting If statement @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting If statement @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
         return ret;
     }
 
@@ -452,13 +342,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (final While n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering While statement @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering While statement @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
-        ret = new IRWhile(n.e.accept(this), n.s.accept(this));
+        ret = new IRWhile(n.e.accept(this), n.s.accept(this), rotateLoops);
 
-        SendDebugMessage(String.format("Exiting While statement @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting While statement @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
         return ret;
     }
 
@@ -466,13 +356,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (final Print n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering Print statement @ %03d:%03d...\n",
-            n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering Print statement @ %03d:%03d...\n",
+            n.lineNumber, n.columnNumber);
 
         ret = new IRPrint(n.e.accept(this));
 
-        SendDebugMessage(String.format("Exiting Print statement @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting Print statement @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
         return ret;
     }
 
@@ -480,14 +370,14 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (final Assign n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering Assign statement @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering Assign statement @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         n.i.accept(this);
-        ret = new IRAssign(getVarLoc(n.i.s), n.e.accept(this));
+        ret = new IRAssign(getVarLoc(annotations.var(n.i), n.i.s), n.e.accept(this));
 
-        SendDebugMessage(String.format("Exiting Assign statement @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting Assign statement @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -496,13 +386,15 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (final ArrayAssign n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering Array Assign statement @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering Array Assign statement @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
-        ret = new IRArrayAssign(n.nameOfArray.accept(this), n.indexInArray.accept(this), n.e.accept(this));
+        n.nameOfArray.accept(this);
+        ret = new IRArrayAssign(getVarLoc(annotations.var(n.nameOfArray), n.nameOfArray.s), n.indexInArray.accept(this),
+                n.e.accept(this));
 
-        SendDebugMessage(String.format("Exiting Array Assign statement @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting Array Assign statement @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -511,13 +403,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (final And n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering And expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering And expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         ret = new IRAnd(n.e1.accept(this), n.e2.accept(this));
 
-        SendDebugMessage(String.format("Exiting And expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting And expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -526,13 +418,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (final LessThan n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering Less Than expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering Less Than expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         ret = new IRLessThan(n.e1.accept(this), n.e2.accept(this));
 
-        SendDebugMessage(String.format("Exiting Less Than expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting Less Than expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -541,13 +433,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (final Plus n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering Plus expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering Plus expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         ret = new IRPlus(n.e1.accept(this), n.e2.accept(this));
 
-        SendDebugMessage(String.format("Exiting Plus expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting Plus expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -556,13 +448,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (final Minus n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering Minus expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering Minus expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         ret = new IRMinus(n.e1.accept(this), n.e2.accept(this));
 
-        SendDebugMessage(String.format("Exiting Minus expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting Minus expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -571,13 +463,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (final Times n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering Times expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering Times expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         ret = new IRTimes(n.e1.accept(this), n.e2.accept(this));
 
-        SendDebugMessage(String.format("Exiting Times expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting Times expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -586,13 +478,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (final ArrayLookup n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering Array Lookup expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering Array Lookup expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         ret = new IRArrayLookup(n.expressionForArray.accept(this), n.indexInArray.accept(this));
 
-        SendDebugMessage(String.format("Exiting Array Lookup expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting Array Lookup expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -601,13 +493,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (final ArrayLength n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering Array Length expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering Array Length expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         ret = new IRArrayLength(n.expressionForArray.accept(this));
 
-        SendDebugMessage(String.format("Exiting Array Length expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting Array Length expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -618,11 +510,11 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
         Type typeT = getTypeOfExpression(n.e);
         List<LazyIRTree> expList = new ArrayList();
         LazyIRTree origin = n.e.accept(this), ret = new IRNull();
-        String cName = typeT.toString(), mName = n.i.s, number;
-        HashMap<String, HashMap> scope = lookupTable;
+        String cName = typeT.toString(), mName = n.i.s;
+        MethodSymbol method;
 
-        SendDebugMessage(String.format("Entering Call to %s @ %03d:%03d...\n",
-                mName, n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering Call to %s @ %03d:%03d...\n",
+                mName, n.lineNumber, n.columnNumber);
 
         n.i.accept(this);
 
@@ -630,29 +522,22 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
             System.err.printf("filename=%s:%03d:%03d -- Cannot handle call %s from primitive type: %s.\n",
                     filename, n.lineNumber, n.columnNumber, mName, cName);
             errors++;
-        } else if (!lookupTable.containsKey(cName)){
+        } else if (!lookupTable.isClass(cName)){
             System.err.printf("filename=%s:%03d:%03d -- Could not find type of caller: %s.\n",
                     filename, n.lineNumber, n.columnNumber, cName);
             errors++;
-        } else if (!lookupTable.get(cName).containsKey(mName)){
+        } else if (!lookupTable.lookup(cName).hasMethod(mName)){
             System.err.printf("filename=%s:%03d:%03d -- Could not find method %s in class %s.\n",
                     filename, n.lineNumber, n.columnNumber, mName, cName);
             errors++;
         } else {
-            scope = (HashMap<String, HashMap>) lookupTable.get(cName).get(mName);
-            for (Expression e: n.el){
-                typeT = getTypeOfExpression(e);
-                if(scope != null && scope.containsKey(typeT.toString())){
-                    scope = scope.get(typeT.toString());
+            method = annotations.call(n);
+            if (method != null){
+                for (Expression e: n.el){
                     expList.add(e.accept(this));
-                } else {
-                    scope = null;
                 }
-            }
-            if (scope != null && scope.containsKey("$end")){
-                scope = scope.get("$end");
-                number = (String) scope.get("$info").get("$declnum");
-                ret = new IRCall(origin, new NAME(new NameOfLabel(cName, mName, number)), expList);
+                // an inherited method keeps the label of the class that declares it
+                ret = new IRCall(origin, new NAME(new NameOfLabel(method.owner.name, mName, method.number)), expList);
             } else {
                 System.err.printf("filename=%s:%03d:%03d -- No matching method declaration for %s in class %s found.\n",
                         filename, n.lineNumber, n.columnNumber, mName, cName);
@@ -661,8 +546,8 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
             }
         }
 
-        SendDebugMessage(String.format("Exiting Call to %s @ %03d:%03d...\n",
-                mName, n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting Call to %s @ %03d:%03d...\n",
+                mName, n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -670,13 +555,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (True n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering True expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering True expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         ret = new IRTrue();
 
-        SendDebugMessage(String.format("Exiting True expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting True expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -684,13 +569,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (False n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering False expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering False expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         ret = new IRFalse();
 
-        SendDebugMessage(String.format("Exiting False expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting False expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -698,13 +583,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (IntegerLiteral n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering IntegerLiteral expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering IntegerLiteral expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         ret = new IRIntegerLiteral(n.i);
 
-        SendDebugMessage(String.format("Exiting IntegerLiteral expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting IntegerLiteral expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -713,13 +598,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (IdentifierExp n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering Identifier expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering Identifier expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
-        ret = getVarLoc(n.s);
+        ret = getVarLoc(annotations.var(n), n.s);
 
-        SendDebugMessage(String.format("Exiting Identifier expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting Identifier expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -727,13 +612,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (This n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering This expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering This expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         ret = new IRThis();
 
-        SendDebugMessage(String.format("Exiting This expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting This expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -742,13 +627,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (NewArray n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering New Array expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering New Array expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         ret = new IRNewArray(n.e.accept(this));
 
-        SendDebugMessage(String.format("Exiting New Array expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting New Array expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -760,13 +645,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
 
         n.i.accept(this);
 
-        SendDebugMessage(String.format("Entering New %s expression @ %03d:%03d...\n",
-                cName, n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering New %s expression @ %03d:%03d...\n",
+                cName, n.lineNumber, n.columnNumber);
 
-        ret = new IRNewObject((int)classScope.get("$info").get("$numfields"));
+        ret = new IRNewObject(cName, lookupTable.lookup(cName).numFields);
 
-        SendDebugMessage(String.format("Exiting New %s expression @ %03d:%03d...\n",
-                cName, n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting New %s expression @ %03d:%03d...\n",
+                cName, n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -775,13 +660,13 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     public LazyIRTree visit (Not n) {
         LazyIRTree ret;
 
-        SendDebugMessage(String.format("Entering Not expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering Not expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         ret = new IRNot(n.e.accept(this));
 
-        SendDebugMessage(String.format("Exiting Not expression @ %03d:%03d...\n",
-                n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting Not expression @ %03d:%03d...\n",
+                n.lineNumber, n.columnNumber);
 
         return ret;
     }
@@ -789,11 +674,11 @@ public final class IRTranslator implements SyntaxTreeVisitor <LazyIRTree>  {
     // String s;
     public LazyIRTree visit (Identifier n) {
 
-        SendDebugMessage(String.format("Entering Identifier %s @ %03d:%03d...\n",
-                n.s, n.lineNumber, n.columnNumber));
+        SendDebugMessage("Entering Identifier %s @ %03d:%03d...\n",
+                n.s, n.lineNumber, n.columnNumber);
 
-        SendDebugMessage(String.format("Exiting Identifier %s @ %03d:%03d...\n",
-                n.s, n.lineNumber, n.columnNumber));
+        SendDebugMessage("Exiting Identifier %s @ %03d:%03d...\n",
+                n.s, n.lineNumber, n.columnNumber);
 
         return new IRNull();
     }
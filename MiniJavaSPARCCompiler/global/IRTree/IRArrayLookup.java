@@ -8,7 +8,7 @@ public class IRArrayLookup extends LazyIRTree {
 
     // arrays have their length at the zeroth index, so we need to move one int further to get the first element
     public Exp asExp(){
-        return new MEM(new BINOP(BINOP.PLUS, new MEM(arr.asExp()),
+        return new MEM(new BINOP(BINOP.PLUS, arr.asExp(),
                 new BINOP( BINOP.PLUS, new BINOP(BINOP.MUL, i.asExp(), new CONST(4)), new CONST(4))));
     }
     public Stm asStm(){
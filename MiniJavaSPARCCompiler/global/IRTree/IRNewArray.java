@@ -18,8 +18,8 @@ public class IRNewArray extends LazyIRTree {
                         new MOVE(
                                 // move the allocated object into our store
                                 store,
-                                new CALL(new NameOfLabel("alloc_obj"), new BINOP(BINOP.PLUS, size, new CONST(1)))
-                        ), new MOVE( new MEM(store), new MEM(size)))),
+                                new CALL(new NameOfLabel("alloc_array"), new BINOP(BINOP.PLUS, size, new CONST(1)))
+                        ), new MOVE( new MEM(store), size))),
             store );
     }
 
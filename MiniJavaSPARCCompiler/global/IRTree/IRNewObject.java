@@ -1,14 +1,18 @@
 package global.IRTree;
 import tree.*;
 import java.lang.UnsupportedOperationException;
+import java.util.Arrays;
 
 public class IRNewObject extends LazyIRTree {
     LazyIRTree s;
-    public IRNewObject(LazyIRTree size) { s=size; }
-    public IRNewObject(int size) { s = new IRIntegerLiteral(size);}
+    String cName;
+    // the runtime needs the layout of the class to know which fields the collector has to follow
+    public IRNewObject(String className, LazyIRTree size) { cName=className; s=size; }
+    public IRNewObject(String className, int size) { cName=className; s = new IRIntegerLiteral(size);}
     
     public Exp asExp(){
-        return new CALL(new NameOfLabel("alloc_obj"), s.asExp());
+        return new CALL(new NAME(new NameOfLabel("alloc_obj")),
+                Arrays.asList(new NAME(new NameOfLabel(cName, "layout")), s.asExp()));
     }
     public Stm asStm(){
         throw new UnsupportedOperationException("Object instantiation cannot be used as a statement.\n");
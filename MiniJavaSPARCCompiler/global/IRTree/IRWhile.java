@@ -7,12 +7,23 @@ public class IRWhile extends LazyIRTree {
     public LABEL whileB = LABEL.generateLABEL("whileStart");
     public LABEL whileI = LABEL.generateLABEL("whileIn");
     public LABEL whileE = LABEL.generateLABEL("whileEnd");
-    public IRWhile(LazyIRTree cond, LazyIRTree stm) { c=cond; s=stm; }
+    boolean rotate;
+    public IRWhile(LazyIRTree cond, LazyIRTree stm) { this(cond, stm, false); }
+    // rotated loops test once on the way in, then keep the test at the bottom of the body
+    public IRWhile(LazyIRTree cond, LazyIRTree stm, boolean rotated) { c=cond; s=stm; rotate=rotated; }
     
     public Exp asExp(){
         throw new UnsupportedOperationException("While statement cannot be used as a condition.\n");
     }
     public Stm asStm(){
+        if (rotate){
+            // only one conditional branch back up to the top every time around, instead of a jump up and a test
+            return new SEQ( c.asCond(whileB, whileE),
+                    new SEQ( whileB,
+                     new SEQ( whileI,
+                      new SEQ( s.asStm(),
+                       new SEQ( c.asCond(whileI, whileE), whileE)))));
+        }
         return new SEQ( whileB,
                 new SEQ ( c.asCond(whileI, whileE),
                  new SEQ (whileI,
@@ -0,0 +1,301 @@
+package global;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import tree.*;
+
+// inlines calls to small methods, and to methods that only get called from one place, into their callers
+// every call is bound to exactly one method when we translate it, so the callee of a CALL is just the fragment with
+// the same name. a copy of the callee's body takes the place of the call: its this, args and locals become temps of
+// their own, its labels get renamed, and its return becomes a move into the value of the call
+public class Inliner {
+
+    public static final int DEFAULT_BUDGET = 30;   // how many IR nodes a callee can have and still get inlined
+    private static final int MAX_DEPTH = 3;        // how many inlined calls deep we keep looking for more
+
+    public int inlined = 0;     // how many calls we replaced
+    private int budget;
+    private int c = 0, sites = 0;
+
+    private HashMap<String, Stm> bodies = new HashMap();        // the body of every method we could inline
+    private HashMap<String, Integer> sizes = new HashMap();
+    private HashMap<String, Integer> callSites = new HashMap(); // how many places call each method
+    private ArrayList<String> inlining = new ArrayList();       // the methods we are inside of right now
+
+    // one copy of a callee, with what its temps and labels turned into
+    private class Site {
+        HashMap<String, TEMP> temps = new HashMap();
+        HashMap<String, NameOfLabel> labels = new HashMap();
+        TEMP result;
+        int id = ++sites;
+        int size = 0;
+        boolean ok = true;
+
+        TEMP temp(String name){
+            if (!temps.containsKey(name)){
+                temps.put(name, fresh());
+            }
+            return temps.get(name);
+        }
+
+        NameOfLabel label(NameOfLabel l){
+            if (!labels.containsKey(l.toString())){
+                labels.put(l.toString(), new NameOfLabel(l.toString(), String.format("inl%d", id)));
+            }
+            return labels.get(l.toString());
+        }
+    }
+
+    public Inliner(int budget){
+        this.budget = budget;
+    }
+
+    public ArrayList<Stm> inline(List<Stm> fragments){
+        ArrayList<Stm> out = new ArrayList();
+        Site check;
+        String name;
+
+        // methods come out of the translator as prologueEnd label, body, jump to epilogueBegin
+        for (Stm f: fragments){
+            name = methodName(f);
+            check = new Site();
+            copy(body(f), check);
+            if (check.ok){
+                bodies.put(name, body(f));
+                sizes.put(name, check.size);
+            }
+            countCalls(body(f));
+        }
+
+        for (Stm f: fragments){
+            inlining.add(methodName(f));
+            out.add(new SEQ(((SEQ)f).left, new SEQ(inline(body(f)), ((SEQ)((SEQ)f).right).right)));
+            inlining.clear();
+        }
+        return out;
+    }
+
+    private static String methodName(Stm f){
+        String label = ((LABEL)((SEQ)f).left).label.toString();
+        return label.substring(0, label.lastIndexOf("$"));
+    }
+
+    private static Stm body(Stm f){
+        return ((SEQ)((SEQ)f).right).left;
+    }
+
+    private static String callee(CALL call){
+        return call.func instanceof NAME ? ((NAME)call.func).label.toString() : null;
+    }
+
+    private void countCalls(Stm s){
+        if (s instanceof SEQ){
+            countCalls(((SEQ)s).left);
+            countCalls(((SEQ)s).right);
+        } else if (s instanceof MOVE){
+            countCalls(((MOVE)s).dst);
+            countCalls(((MOVE)s).src);
+        } else if (s instanceof EVAL){
+            countCalls(((EVAL)s).exp);
+        } else if (s instanceof CJUMP){
+            countCalls(((CJUMP)s).left);
+            countCalls(((CJUMP)s).right);
+        }
+    }
+
+    private void countCalls(Exp e){
+        if (e instanceof BINOP){
+            countCalls(((BINOP)e).left);
+            countCalls(((BINOP)e).right);
+        } else if (e instanceof MEM){
+            countCalls(((MEM)e).exp);
+        } else if (e instanceof RET){
+            countCalls(((RET)e).stm);
+            countCalls(((RET)e).exp);
+        } else if (e instanceof CALL){
+            if (callee((CALL)e) != null){
+                callSites.merge(callee((CALL)e), 1, Integer::sum);
+            }
+            if (((CALL)e).args != null){
+                for (Exp arg: ((CALL)e).args.toList()){
+                    countCalls(arg);
+                }
+            }
+        }
+    }
+
+    // small enough, or the only call there is to it, and not already being inlined further up (so no recursion)
+    private boolean shouldInline(CALL call){
+        String name = callee(call);
+        if (name == null || !bodies.containsKey(name) || inlining.contains(name) || inlining.size() > MAX_DEPTH
+                || call.args == null || call.args.toList().size() > 6){
+            return false;
+        }
+        return sizes.get(name) <= budget || (inlining.size() == 1 && callSites.get(name) == 1);
+    }
+
+    public Stm inline(Stm s){
+        if (s instanceof SEQ){
+            return new SEQ(inline(((SEQ)s).left), inline(((SEQ)s).right));
+        } else if (s instanceof MOVE){
+            if (((MOVE)s).dst instanceof MEM){
+                return new MOVE(new MEM(inline(((MEM)((MOVE)s).dst).exp)), inline(((MOVE)s).src));
+            }
+            return new MOVE(((MOVE)s).dst, inline(((MOVE)s).src));
+        } else if (s instanceof EVAL){
+            // nobody wants the value of a call on its own, so we only need the body
+            if (((EVAL)s).exp instanceof CALL){
+                CALL call = inlineArgs((CALL)((EVAL)s).exp);
+                return shouldInline(call) ? inlineCall(call, fresh()) : new EVAL(call);
+            }
+            return new EVAL(inline(((EVAL)s).exp));
+        } else if (s instanceof CJUMP){
+            CJUMP cj = (CJUMP)s;
+            return new CJUMP(cj.relop, inline(cj.left), inline(cj.right), cj.iftrue, cj.iffalse);
+        } else if (s instanceof JUMP || s instanceof LABEL){
+            return s;
+        } else {
+            throw new UnsupportedOperationException(
+                    String.format("Found unexpected Statement Type: %s", s.getClass()));
+        }
+    }
+
+    public Exp inline(Exp e){
+        TEMP result;
+        if (e instanceof BINOP){
+            return new BINOP(((BINOP)e).binop, inline(((BINOP)e).left), inline(((BINOP)e).right));
+        } else if (e instanceof MEM){
+            return new MEM(inline(((MEM)e).exp));
+        } else if (e instanceof CALL){
+            CALL call = inlineArgs((CALL)e);
+            if (shouldInline(call)){
+                result = fresh();
+                return new RET(inlineCall(call, result), result);
+            }
+            return call;
+        } else if (e instanceof RET){
+            return new RET(inline(((RET)e).stm), inline(((RET)e).exp));
+        } else if (e instanceof CONST || e instanceof TEMP || e instanceof NAME){
+            return e;
+        } else {
+            throw new UnsupportedOperationException(
+                    String.format("Found unexpected Expression Type: %s", e.getClass()));
+        }
+    }
+
+    private CALL inlineArgs(CALL call){
+        ArrayList<Exp> args = new ArrayList();
+        if (call.args != null){
+            for (Exp arg: call.args.toList()){
+                args.add(inline(arg));
+            }
+        }
+        return new CALL(call.func, args);
+    }
+
+    // this and the args get worked out into their temps in order, same as they would be for the call
+    private Stm inlineCall(CALL call, TEMP result){
+        String name = callee(call);
+        List<Exp> args = call.args.toList();
+        Site site = new Site();
+        Stm body;
+
+        site.result = result;
+        for (int i = 0; i < args.size(); i++){
+            site.temps.put(String.format("%%i%d", i), fresh());
+        }
+        body = copy(bodies.get(name), site);
+
+        // anything the callee calls might be worth inlining too
+        inlining.add(name);
+        body = inline(body);
+        inlining.remove(inlining.size() - 1);
+
+        for (int i = args.size() - 1; i >= 0; i--){
+            body = new SEQ(new MOVE(site.temps.get(String.format("%%i%d", i)), args.get(i)), body);
+        }
+        inlined++;
+        return body;
+    }
+
+    private TEMP fresh(){
+        return new TEMP(new NameOfTemp(String.format("inl%03d", ++c)));
+    }
+
+    // is this the stack slot of a local, %fp - 4k?
+    private static boolean isLocal(Exp e){
+        return e instanceof MEM && ((MEM)e).exp instanceof BINOP && ((BINOP)((MEM)e).exp).binop == BINOP.MINUS
+                && ((BINOP)((MEM)e).exp).left instanceof TEMP
+                && ((TEMP)((BINOP)((MEM)e).exp).left).temp.toString().equals("%fp")
+                && ((BINOP)((MEM)e).exp).right instanceof CONST;
+    }
+
+    // a copy of a callee's body for one call site
+    // if it touches a register we don't know how to move into its caller, the site is marked as not ok
+    private Stm copy(Stm s, Site site){
+        site.size++;
+        if (s instanceof SEQ){
+            return new SEQ(copy(((SEQ)s).left, site), copy(((SEQ)s).right, site));
+        } else if (s instanceof MOVE){
+            MOVE m = (MOVE)s;
+            // the only thing that ever moves into %i0 is the return
+            if (m.dst instanceof TEMP && ((TEMP)m.dst).temp.toString().equals("%i0")){
+                return new MOVE(site.result, copy(m.src, site));
+            }
+            return new MOVE(copy(m.dst, site), copy(m.src, site));
+        } else if (s instanceof EVAL){
+            return new EVAL(copy(((EVAL)s).exp, site));
+        } else if (s instanceof CJUMP){
+            CJUMP cj = (CJUMP)s;
+            return new CJUMP(cj.relop, copy(cj.left, site), copy(cj.right, site),
+                    site.label(cj.iftrue), site.label(cj.iffalse));
+        } else if (s instanceof JUMP){
+            if (((JUMP)s).targets.size() != 1){
+                site.ok = false;
+                return s;
+            }
+            return new JUMP(site.label(((JUMP)s).targets.get(0)));
+        } else if (s instanceof LABEL){
+            return new LABEL(site.label(((LABEL)s).label));
+        } else {
+            throw new UnsupportedOperationException(
+                    String.format("Found unexpected Statement Type: %s", s.getClass()));
+        }
+    }
+
+    private Exp copy(Exp e, Site site){
+        String name;
+        site.size++;
+        if (isLocal(e)){
+            return site.temp("local" + ((CONST)((BINOP)((MEM)e).exp).right).value);
+        } else if (e instanceof TEMP){
+            name = ((TEMP)e).temp.toString();
+            if (name.startsWith("%") && !site.temps.containsKey(name) && !name.matches("%i[0-5]")){
+                site.ok = false;
+                return e;
+            }
+            return site.temp(name);
+        } else if (e instanceof BINOP){
+            return new BINOP(((BINOP)e).binop, copy(((BINOP)e).left, site), copy(((BINOP)e).right, site));
+        } else if (e instanceof MEM){
+            return new MEM(copy(((MEM)e).exp, site));
+        } else if (e instanceof CALL){
+            ArrayList<Exp> args = new ArrayList();
+            if (((CALL)e).args != null){
+                for (Exp arg: ((CALL)e).args.toList()){
+                    args.add(copy(arg, site));
+                }
+            }
+            return new CALL(((CALL)e).func, args);
+        } else if (e instanceof RET){
+            return new RET(copy(((RET)e).stm, site), copy(((RET)e).exp, site));
+        } else if (e instanceof CONST || e instanceof NAME){
+            return e;
+        } else {
+            throw new UnsupportedOperationException(
+                    String.format("Found unexpected Expression Type: %s", e.getClass()));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package global;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+
+import assem.*;
+import tree.*;
+
+// linear scan register allocation (Poletto and Sarkar)
+// much quicker than coloring on big methods since we only walk the live intervals once, in order of their start
+// every instruction i gets two points: 2i where its sources are read, and 2i+1 where its destination is written,
+// so a temp that dies at an instruction can give its register to the temp that instruction defines
+public class LinearScanAllocator extends RegisterAllocator {
+
+    private static final int K = REGISTERS.length;
+
+    // the stretch of the method a temp is live in
+    private static class Interval {
+        int temp, start = Integer.MAX_VALUE, end = -1, reg = -1;
+        int hint = -1;  // temp we were moved from, so we can try to end up in the same register
+        boolean reload; // reload temps only live for one instruction, we can't spill them any more than that
+    }
+
+    private FlowGraph flow;
+    private Interval[] intervals;
+    private BitSet[] fixed;     // points at which each of our registers is being used by precolored temps
+    private BitSet calls;       // points at which something gets clobbered by a call
+
+    public String getName(){ return "linear scan"; }
+
+    public List<NameOfTemp> allocate(List<Instruction> instructions, HashMap<NameOfTemp, String> tempMap){
+        ArrayList<NameOfTemp> spills = new ArrayList();
+        ArrayList<Interval> unhandled = new ArrayList(), active = new ArrayList();
+        HashMap<String, Integer> registerIndex = new HashMap();
+        boolean[] free = new boolean[K];
+        Interval victim;
+
+        for (int r = 0; r < K; r++){
+            registerIndex.put(REGISTERS[r], r);
+            free[r] = !reserved[r];
+        }
+
+        flow = new FlowGraph(instructions, tempMap);
+        buildIntervals(tempMap, registerIndex);
+
+        for (Interval i: intervals){
+            if (i != null && i.end >= 0){
+                unhandled.add(i);
+            }
+        }
+        Collections.sort(unhandled, (a, b) -> a.start - b.start);
+
+        for (Interval current: unhandled){
+            // anything that ended before we start gives its register back
+            for (int a = active.size() - 1; a >= 0; a--){
+                if (active.get(a).end < current.start){
+                    free[active.get(a).reg] = true;
+                    active.remove(a);
+                }
+            }
+
+            current.reg = pickRegister(current, free);
+            if (current.reg >= 0){
+                free[current.reg] = false;
+                active.add(current);
+                continue;
+            }
+
+            // nothing left, so spill whichever of the usable active intervals lives the longest
+            victim = null;
+            for (Interval a: active){
+                if (!a.reload && a.end > current.end && !blocked(a.reg, current) &&
+                        (victim == null || a.end > victim.end)){
+                    victim = a;
+                }
+            }
+            if (victim == null && current.reload){
+                // reloads have to get a register, so take one from anybody we can
+                for (Interval a: active){
+                    if (!a.reload && !blocked(a.reg, current) && (victim == null || a.end > victim.end)){
+                        victim = a;
+                    }
+                }
+            }
+
+            if (victim != null){
+                current.reg = victim.reg;
+                victim.reg = -1;
+                active.remove(victim);
+                active.add(current);
+                spills.add(flow.temps.get(victim.temp));
+            } else {
+                spills.add(flow.temps.get(current.temp));
+            }
+        }
+
+        if (spills.isEmpty()){
+            for (Interval i: intervals){
+                if (i != null && i.reg >= 0){
+                    tempMap.put(flow.temps.get(i.temp), REGISTERS[i.reg]);
+                }
+            }
+        }
+        return spills;
+    }
+
+    private void buildIntervals(HashMap<NameOfTemp, String> tempMap, HashMap<String, Integer> registerIndex){
+        int n = flow.instructions.size();
+        String reg;
+        intervals = new Interval[flow.temps.size()];
+        fixed = new BitSet[K];
+        calls = new BitSet();
+        for (int r = 0; r < K; r++){
+            fixed[r] = new BitSet();
+        }
+
+        for (int t = 0; t < intervals.length; t++){
+            reg = tempMap.get(flow.temps.get(t));
+            if (reg == null){
+                intervals[t] = new Interval();
+                intervals[t].temp = t;
+                intervals[t].reload = flow.temps.get(t).toString().startsWith(MaximalMunch.SPILL_PREFIX);
+            }
+        }
+
+        for (int i = 0; i < n; i++){
+            for (int t = flow.liveIn[i].nextSetBit(0); t >= 0; t = flow.liveIn[i].nextSetBit(t + 1)){
+                mark(t, 2 * i, tempMap, registerIndex);
+            }
+            for (int t = flow.liveOut[i].nextSetBit(0); t >= 0; t = flow.liveOut[i].nextSetBit(t + 1)){
+                mark(t, 2 * i + 1, tempMap, registerIndex);
+            }
+            for (int u: flow.uses[i]){
+                mark(u, 2 * i, tempMap, registerIndex);
+            }
+            for (int d: flow.defs[i]){
+                mark(d, 2 * i + 1, tempMap, registerIndex);
+            }
+            if (FlowGraph.isCall(FlowGraph.opcode(flow.instructions.get(i), tempMap))){
+                calls.set(2 * i + 1);
+            }
+            if (flow.isMove[i] && intervals[flow.defs[i][0]] != null){
+                intervals[flow.defs[i][0]].hint = flow.uses[i][0];
+            }
+        }
+    }
+
+    private void mark(int t, int point, HashMap<NameOfTemp, String> tempMap, HashMap<String, Integer> registerIndex){
+        Integer r;
+        if (intervals[t] != null){
+            intervals[t].start = Math.min(intervals[t].start, point);
+            intervals[t].end = Math.max(intervals[t].end, point);
+        } else {
+            r = registerIndex.get(tempMap.get(flow.temps.get(t)));
+            if (r != null){
+                fixed[r].set(point);
+            }
+        }
+    }
+
+    // is a precolored temp using register r anywhere in i?
+    private boolean blocked(int r, Interval i){
+        int next = fixed[r].nextSetBit(i.start);
+        return next >= 0 && next <= i.end;
+    }
+
+    // take the register we were moved from if we can, so the move goes away
+    // otherwise, anything living across a call has to go in a local; anything else goes in an outgoing or global
+    // register first, to leave the locals for those that need them
+    private int pickRegister(Interval i, boolean[] free){
+        Interval from;
+        int next = calls.nextSetBit(i.start);
+        boolean crossesCall = next >= 0 && next <= i.end;
+
+        if (i.hint >= 0){
+            from = intervals[i.hint];
+            if (from != null && from.reg >= 0 && free[from.reg] && !blocked(from.reg, i)){
+                return from.reg;
+            }
+        }
+        if (!crossesCall){
+            for (int r = NUM_LOCALS; r < K; r++){
+                if (free[r] && !blocked(r, i)){
+                    return r;
+                }
+            }
+        }
+        for (int r = 0; r < NUM_LOCALS; r++){
+            if (free[r] && !blocked(r, i)){
+                return r;
+            }
+        }
+        return -1;
+    }
+}
@@ -3,13 +3,11 @@ import syntax.*;
 
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
-import java.util.HashMap;
-import java.util.TreeSet;
 
 public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
-    HashMap<String, HashMap> lookupTable; // stores all info
-    private HashMap<String, HashMap<String, HashMap>> classScope; // stores current class info
-    private HashMap<String, HashMap> methodScope; // stores current method info
+    SymbolTable lookupTable; // stores all info
+    private ClassSymbol classScope; // stores current class info
+    private MethodSymbol methodScope; // stores current method info
     String currentClass, currentMethod;
 
     int errors = 0;
@@ -17,15 +15,19 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
     String fileName;
     PrintWriter debugOut;
 
+    // the types of every expression, and the method every call goes to
+    private Annotations annotations = new Annotations();
+
     public int getErrors(){ return errors; }
+    public Annotations getAnnotations(){ return annotations; }
 
-    public LookupChecker (HashMap table, String fileNameIn)
+    public LookupChecker (SymbolTable table, String fileNameIn)
     { lookupTable = table; fileName = fileNameIn; debugOut = null; verbose = false; }
 
-    public LookupChecker (HashMap table, String fileNameIn, String verboseOut) throws FileNotFoundException
+    public LookupChecker (SymbolTable table, String fileNameIn, String verboseOut) throws FileNotFoundException
     { lookupTable = table; fileName = fileNameIn; debugOut=new PrintWriter(verboseOut); verbose = true;}
 
-    public LookupChecker (HashMap table, String fileNameIn, PrintWriter verboseOut)
+    public LookupChecker (SymbolTable table, String fileNameIn, PrintWriter verboseOut)
     { lookupTable = table; fileName = fileNameIn; debugOut = verboseOut; verbose = true;};
 
     private Type stringToType(String s){
@@ -47,26 +49,25 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
     }
 
     private boolean classExists(String className){
-        return lookupTable.containsKey(className);
+        return lookupTable.isClass(className);
     }
 
-    private HashMap<String, String> varInMethod(String varName){
-        HashMap<String, HashMap> scope;
-        HashMap<String, String> ret = null;
-        if(classScope.containsKey("$fields")){
-            scope = classScope.get("$fields");
-            if (scope.containsKey(varName)){
-                ret = scope.get(varName);
-            }
-        }
+    private VarSymbol varInMethod(String varName){
         // we use arguments and locals before we do fields
         // lookup creator guarantees that no arguments and locals share a name
-        if(methodScope.containsKey(varName)){
-            ret = methodScope.get(varName);
+        VarSymbol ret = methodScope.lookup(varName);
+        if (ret == null){
+            ret = classScope.field(varName);
         }
         return ret;
     }
 
+    // remembers what type e turned out to be, and hands it back
+    private Type note(Expression e, Type t){
+        annotations.type(e, t);
+        return t;
+    }
+
     // returns true if the types match, otherwise false
     private boolean typesMatch(Type type1, Type type2){
         // two identifier comparison is the only special case
@@ -82,6 +83,13 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
         }
     }
 
+    // only bothers to format the message if anyone is going to read it
+    private void sendDebugMessage(String format, Object... args){
+        if(verbose){
+            debugOut.print(String.format(format, args));
+        }
+    }
+
     private void sendErrorMessage(String message){
         System.err.print(message);
         sendDebugMessage(message);
@@ -90,8 +98,8 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
 
     // Subcomponents of Program:  MainClass m; List<ClassDecl> cl;
     public Type visit (final Program n) {
-        sendDebugMessage(String.format("filename=%s:000:000 -- Visiting Program...\n",
-                fileName));
+        sendDebugMessage("filename=%s:000:000 -- Visiting Program...\n",
+                fileName);
 
         if(n == null){
             sendErrorMessage(String.format("filename=%s:000:000 -- Null Program!", fileName));
@@ -104,20 +112,20 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
                 c.accept(this);
             }
         }
-        sendDebugMessage(String.format("filename=%s:000:000 -- Returning From Program...\n",
-                fileName));
+        sendDebugMessage("filename=%s:000:000 -- Returning From Program...\n",
+                fileName);
         return Type.THE_VOID_TYPE;
     }
 
     // Subcomponents of MainClass:  Identifier i1, i2; Statement s;
     public Type visit (final MainClass n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting main class %s...\n",
-                fileName, n.nameOfMainClass.lineNumber, n.nameOfMainClass.columnNumber, n.nameOfMainClass.s));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting main class %s...\n",
+                fileName, n.nameOfMainClass.lineNumber, n.nameOfMainClass.columnNumber, n.nameOfMainClass.s);
 
-        classScope = lookupTable.get(n.nameOfMainClass.s);
+        classScope = lookupTable.lookup(n.nameOfMainClass.s);
         currentClass = n.nameOfMainClass.s;
 
-        methodScope = ((HashMap<String, HashMap>)classScope.get("main").get("String")).get("$end");
+        methodScope = classScope.overloads("main")[0];
 
         n.nameOfMainClass.accept(this);
         n.nameOfCommandLineArgs.accept(this);
@@ -129,17 +137,17 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
         classScope = null;
         currentClass = null;
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from main class %s...\n",
-                fileName, n.nameOfMainClass.lineNumber, n.nameOfMainClass.columnNumber, n.nameOfMainClass.s));
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from main class %s...\n",
+                fileName, n.nameOfMainClass.lineNumber, n.nameOfMainClass.columnNumber, n.nameOfMainClass.s);
         return Type.THE_VOID_TYPE;
     }
 
     // Subcomponents of SimpleClassDecl: Identifier i; List<FieldDecl> vl; List<MethodDecl> ml;
     public Type visit (final SimpleClassDecl n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting class %s...\n",
-                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting class %s...\n",
+                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s);
 
-        classScope = lookupTable.get(n.i.s);
+        classScope = lookupTable.lookup(n.i.s);
         currentClass = n.i.s;
 
         n.i.accept (this);
@@ -153,17 +161,17 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
         classScope = null;
         currentClass = null;
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from class %s.\n",
-                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s));
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from class %s.\n",
+                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s);
         return Type.THE_VOID_TYPE;
     }
 
     // Subcomponents of ExtendingClassDecl: Identifier i, j; List<FieldDecl> vl; List<MethodDecl> ml;
     public Type visit (final ExtendingClassDecl n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting class %s...\n",
-                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting class %s...\n",
+                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s);
 
-        classScope = lookupTable.get(n.i.s);
+        classScope = lookupTable.lookup(n.i.s);
         currentClass = n.i.s;
 
         n.i.accept (this);
@@ -179,18 +187,19 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
         classScope = null;
         currentClass = null;
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from class %s.\n",
-                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s));
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from class %s.\n",
+                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s);
         return Type.THE_VOID_TYPE;
     }
 
     // Subcomponents of MethodDecl:
     // Type t; Identifier i; List<FormalDecl> fl; List<LocalDecl> locals; List<Statement>t sl; Expression e;
     public Type visit (final MethodDecl n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting method declaration for %s...\n",
-                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting method declaration for %s...\n",
+                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s);
 
-        methodScope = classScope.get(n.i.s);
+        int[] argTypes = new int[n.formals.size()];
+        int i = 0;
         currentMethod = n.i.s;
         n.i.accept(this);
 
@@ -208,9 +217,9 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
         // find out what specific method declaration we are using
         for (FormalDecl f: n.formals){
             f.accept(this);
-            methodScope = methodScope.get(f.t.toString());
+            argTypes[i++] = lookupTable.typeId(f.t);
         }
-        methodScope = methodScope.get("$end");
+        methodScope = classScope.resolve(n.i.s, argTypes);
 
         // check all the locals
         for (final LocalDecl v: n.locals) {
@@ -227,25 +236,25 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
 
         methodScope = null;
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from method declaration for %s.\n",
-                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s));
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from method declaration for %s.\n",
+                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s);
         return Type.THE_VOID_TYPE;
     }
 
     public Type visit (FieldDecl n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting field declaration for %s...\n",
-                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting field declaration for %s...\n",
+                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s);
         n.i.accept(this);
         n.t.accept(this);
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from field declaration for %s.\n",
-                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s));
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from field declaration for %s.\n",
+                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s);
         return Type.THE_VOID_TYPE;
     }
 
     public Type visit (LocalDecl n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting local declaration for %s...\n",
-                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting local declaration for %s...\n",
+                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s);
         n.t.accept(this);
         n.i.accept(this);
 
@@ -258,51 +267,51 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
             }
         }
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from local declaration for %s.\n",
-                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s));
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from local declaration for %s.\n",
+                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s);
         return Type.THE_VOID_TYPE;
     }
 
     public Type visit (FormalDecl n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting formal declaration for %s...\n",
-                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting formal declaration for %s...\n",
+                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s);
         n.t.accept(this);
         n.i.accept(this);
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from formal declaration %s.\n",
-                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s));
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from formal declaration %s.\n",
+                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s);
         return Type.THE_VOID_TYPE;
     }
 
     public Type visit (IntArrayType n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting int[] type...\n",
-                fileName, n.lineNumber, n.columnNumber));
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from int[] type.\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting int[] type...\n",
+                fileName, n.lineNumber, n.columnNumber);
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from int[] type.\n",
+                fileName, n.lineNumber, n.columnNumber);
         return Type.THE_INT_ARRAY_TYPE;
     }
 
     public Type visit (BooleanType n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting boolean type...\n",
-                fileName, n.lineNumber, n.columnNumber));
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from boolean type.\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting boolean type...\n",
+                fileName, n.lineNumber, n.columnNumber);
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from boolean type.\n",
+                fileName, n.lineNumber, n.columnNumber);
         return Type.THE_BOOLEAN_TYPE;
     }
 
     public Type visit (IntegerType n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting int type...\n",
-                fileName, n.lineNumber, n.columnNumber));
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from int type.\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting int type...\n",
+                fileName, n.lineNumber, n.columnNumber);
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from int type.\n",
+                fileName, n.lineNumber, n.columnNumber);
         return Type.THE_INTEGER_TYPE;
     }
 
     public Type visit (VoidType n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting void type...\n",
-                fileName, n.lineNumber, n.columnNumber));
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from void type.\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting void type...\n",
+                fileName, n.lineNumber, n.columnNumber);
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from void type.\n",
+                fileName, n.lineNumber, n.columnNumber);
         return Type.THE_VOID_TYPE;
     }
 
@@ -310,39 +319,39 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
     public Type visit (IdentifierType n) {
 
         if (n.nameOfType == null){
-            sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting identifier type...\n",
-                    fileName, n.lineNumber, n.columnNumber));
+            sendDebugMessage("filename=%s:%03d:%03d -- Visiting identifier type...\n",
+                    fileName, n.lineNumber, n.columnNumber);
             sendErrorMessage(String.format("filename=%s:%03d:%03d -- Null Identifier type\n",
                     fileName, n.lineNumber, n.columnNumber));
         } else if (!classExists(n.nameOfType)){
-            sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting identifier type %s...\n",
-                    fileName, n.lineNumber, n.columnNumber, n.nameOfType));
+            sendDebugMessage("filename=%s:%03d:%03d -- Visiting identifier type %s...\n",
+                    fileName, n.lineNumber, n.columnNumber, n.nameOfType);
             sendErrorMessage(String.format("filename=%s:%03d:%03d -- Class %s does not exist!\n",
                     fileName, n.lineNumber, n.columnNumber, n.nameOfType));
         } else {
-            sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting identifier type %s...\n",
-                    fileName, n.lineNumber, n.columnNumber, n.nameOfType));
+            sendDebugMessage("filename=%s:%03d:%03d -- Visiting identifier type %s...\n",
+                    fileName, n.lineNumber, n.columnNumber, n.nameOfType);
         }
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning identifier type %s.\n",
-                fileName, n.lineNumber, n.columnNumber, n.nameOfType));
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning identifier type %s.\n",
+                fileName, n.lineNumber, n.columnNumber, n.nameOfType);
         return n;
     }
 
     public Type visit (final Block n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting block of statements...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting block of statements...\n",
+                fileName, n.lineNumber, n.columnNumber);
 
         for (Statement s: n.sl) s.accept (this);
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from block of statements.\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from block of statements.\n",
+                fileName, n.lineNumber, n.columnNumber);
         return Type.THE_VOID_TYPE;
     }
 
     public Type visit (final If n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting If statement...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting If statement...\n",
+                fileName, n.lineNumber, n.columnNumber);
         Type returnType = n.e.accept(this);
         if(!typesMatch(returnType, Type.THE_BOOLEAN_TYPE)){
             sendErrorMessage(String.format("filename=%s:%03d:%03d -- If condition was expecting boolean, found %s.\n",
@@ -350,52 +359,53 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
         }
         n.s1.accept(this);
         n.s2.accept(this);
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from If statement.\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from If statement.\n",
+                fileName, n.lineNumber, n.columnNumber);
         return Type.THE_VOID_TYPE;
     }
 
     public Type visit (final While n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting While statement...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting While statement...\n",
+                fileName, n.lineNumber, n.columnNumber);
         Type returnType = n.e.accept(this);
         if(!typesMatch(returnType, Type.THE_BOOLEAN_TYPE)){
             sendErrorMessage(String.format("filename=%s:%03d:%03d -- While condition was expecting boolean, found %s\n",
                     fileName, n.lineNumber, n.columnNumber, returnType.toString()));
         }
         n.s.accept(this);
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from While statement.\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from While statement.\n",
+                fileName, n.lineNumber, n.columnNumber);
         return Type.THE_VOID_TYPE;
     }
 
     public Type visit (final Print n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting Print statement...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting Print statement...\n",
+                fileName, n.lineNumber, n.columnNumber);
         Type returnType = n.e.accept(this);
         if (!typesMatch(returnType, Type.THE_INTEGER_TYPE)){
             sendErrorMessage(String.format("filename=%s:%03d:%03d -- Print expression was expecting int, found %s.\n",
                     fileName, n.lineNumber, n.columnNumber, returnType.toString()));
         }
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from Print statement.\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from Print statement.\n",
+                fileName, n.lineNumber, n.columnNumber);
         return Type.THE_VOID_TYPE;
     }
 
     public Type visit (final Assign n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting Assign statement...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting Assign statement...\n",
+                fileName, n.lineNumber, n.columnNumber);
         Type returnType, expectedType;
-        HashMap<String, String> varInfo;
+        VarSymbol varInfo;
 
         n.i.accept (this);
 
         varInfo = varInMethod(n.i.s);
+        annotations.var(n.i, varInfo);
         if (varInfo == null) {
             sendErrorMessage(String.format("filename=%s:%03d:%03d -- Could not find var %s in scope of class %s method %s.\n",
                     fileName, n.lineNumber, n.columnNumber, n.i.s, currentClass, currentMethod));
         } else {
-            expectedType = stringToType(varInfo.get("$type"));
+            expectedType = stringToType(varInfo.type);
             returnType = n.e.accept(this);
             if (!typesMatch(expectedType, returnType)) {
                 sendErrorMessage(String.format("filename=%s:%03d:%03d -- Assign statement was expecting %s, got %s.\n",
@@ -403,21 +413,27 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
             }
         }
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from Assign statement.\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from Assign statement.\n",
+                fileName, n.lineNumber, n.columnNumber);
         return Type.THE_VOID_TYPE;
     }
 
     // Subcomponents of ArrayAssign:  Identifier nameOfArray; Expression indexInArray, Expression e;
     public Type visit (final ArrayAssign n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting ArrayAssign statement...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting ArrayAssign statement...\n",
+                fileName, n.lineNumber, n.columnNumber);
         Type returnType;
+        VarSymbol varInfo;
 
         n.nameOfArray.accept(this);
-        returnType = stringToType(varInMethod(n.nameOfArray.s).get("$type"));
+        varInfo = varInMethod(n.nameOfArray.s);
+        annotations.var(n.nameOfArray, varInfo);
+        returnType = stringToType(varInfo == null ? null : varInfo.type);
         // make sure that the identifier is of array type
-        if(!typesMatch(returnType, Type.THE_INT_ARRAY_TYPE)){
+        if (varInfo == null) {
+            sendErrorMessage(String.format("filename=%s:%03d:%03d -- Could not find var %s in scope of class %s method %s.\n",
+                    fileName, n.lineNumber, n.columnNumber, n.nameOfArray.s, currentClass, currentMethod));
+        } else if(!typesMatch(returnType, Type.THE_INT_ARRAY_TYPE)){
             sendErrorMessage(String.format("filename=%s:%03d:%03d -- Array identifier for assignment was" +
                             " expecting int[], got %s.\n",
                     fileName, n.lineNumber, n.columnNumber, returnType.toString()));
@@ -436,15 +452,15 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
                     fileName, n.lineNumber, n.columnNumber, returnType.toString()));
         }
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from ArrayAssign statement.\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from ArrayAssign statement.\n",
+                fileName, n.lineNumber, n.columnNumber);
         return Type.THE_VOID_TYPE;
     }
 
     // Expression e1,e2;
     public Type visit (final And n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting And statement...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting And statement...\n",
+                fileName, n.lineNumber, n.columnNumber);
 
         Type returnType;
         // make sure both evaluate to boolean
@@ -460,15 +476,15 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
                     fileName, n.lineNumber, n.columnNumber, returnType.toString()));
         }
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from And statement.\n",
-                fileName, n.lineNumber, n.columnNumber));
-        return Type.THE_BOOLEAN_TYPE;
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from And statement.\n",
+                fileName, n.lineNumber, n.columnNumber);
+        return note(n, Type.THE_BOOLEAN_TYPE);
     }
 
     // Expression e1,e2;
     public Type visit (final LessThan n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting Less Than statement...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting Less Than statement...\n",
+                fileName, n.lineNumber, n.columnNumber);
         Type returnType;
         // make sure both are integers
         returnType = n.e1.accept(this);
@@ -483,15 +499,15 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
                     fileName, n.lineNumber, n.columnNumber, returnType.toString()));
         }
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from Less Than statement.\n",
-                fileName, n.lineNumber, n.columnNumber));
-        return Type.THE_BOOLEAN_TYPE;
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from Less Than statement.\n",
+                fileName, n.lineNumber, n.columnNumber);
+        return note(n, Type.THE_BOOLEAN_TYPE);
     }
 
     // Expression e1,e2;
     public Type visit (final Plus n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting Plus statement...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting Plus statement...\n",
+                fileName, n.lineNumber, n.columnNumber);
         Type returnType;
         // make sure both are integers!
         returnType = n.e1.accept(this);
@@ -506,15 +522,15 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
                     fileName, n.lineNumber, n.columnNumber, returnType.toString()));
         }
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from Plus statement.\n",
-                fileName, n.lineNumber, n.columnNumber));
-        return Type.THE_INTEGER_TYPE;
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from Plus statement.\n",
+                fileName, n.lineNumber, n.columnNumber);
+        return note(n, Type.THE_INTEGER_TYPE);
     }
 
     // Expression e1,e2;
     public Type visit (final Minus n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting Minus statement...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting Minus statement...\n",
+                fileName, n.lineNumber, n.columnNumber);
         Type returnType;
         // make sure that both are integers
         returnType = n.e1.accept(this);
@@ -529,15 +545,15 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
                     fileName, n.lineNumber, n.columnNumber, returnType.toString()));
         }
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from Minus statement.\n",
-                fileName, n.lineNumber, n.columnNumber));
-        return Type.THE_INTEGER_TYPE;
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from Minus statement.\n",
+                fileName, n.lineNumber, n.columnNumber);
+        return note(n, Type.THE_INTEGER_TYPE);
     }
 
     // Expression e1,e2;
     public Type visit (final Times n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting Times statement...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting Times statement...\n",
+                fileName, n.lineNumber, n.columnNumber);
         // make sure both are ints
         Type returnType;
         returnType = n.e1.accept(this);
@@ -551,15 +567,15 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
             sendErrorMessage(String.format("filename=%s:%03d:%03d -- Times Expression 2 was expecting int, got %s.\n",
                     fileName, n.lineNumber, n.columnNumber, returnType.toString()));
         }
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from Times statement.\n",
-                fileName, n.lineNumber, n.columnNumber));
-        return Type.THE_INTEGER_TYPE;
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from Times statement.\n",
+                fileName, n.lineNumber, n.columnNumber);
+        return note(n, Type.THE_INTEGER_TYPE);
     }
 
     // Expression expressionForArray, indexInArray;
     public Type visit (final ArrayLookup n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting Array Lookup statement...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting Array Lookup statement...\n",
+                fileName, n.lineNumber, n.columnNumber);
         Type returnType;
 
         returnType = n.expressionForArray.accept(this);
@@ -577,15 +593,15 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
                     fileName, n.lineNumber, n.columnNumber, returnType.toString()));
         }
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from Array Lookup statement.\n",
-                fileName, n.lineNumber, n.columnNumber));
-        return Type.THE_INTEGER_TYPE;
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from Array Lookup statement.\n",
+                fileName, n.lineNumber, n.columnNumber);
+        return note(n, Type.THE_INTEGER_TYPE);
     }
 
     // Expression expressionForArray;
     public Type visit (final ArrayLength n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting Array Length statement...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting Array Length statement...\n",
+                fileName, n.lineNumber, n.columnNumber);
         Type returnType;
 
         returnType = n.expressionForArray.accept(this);
@@ -595,23 +611,24 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
                     fileName, n.lineNumber, n.columnNumber, returnType.toString()));
         }
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from Array Length statement.\n",
-                fileName, n.lineNumber, n.columnNumber));
-        return Type.THE_INTEGER_TYPE;
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from Array Length statement.\n",
+                fileName, n.lineNumber, n.columnNumber);
+        return note(n, Type.THE_INTEGER_TYPE);
     }
 
 
     // Subcomponents of Call:  Expression e; Identifier i; ExpressionList el;
     public Type visit (Call n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting call for %s...\n",
-                fileName, n.lineNumber, n.columnNumber, n.i.s));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting call for %s...\n",
+                fileName, n.lineNumber, n.columnNumber, n.i.s);
         Type returnType = Type.THE_VOID_TYPE;
-        String argType, argTStr = "(";
+        String argTStr = "(";
         String methodName = n.i.s, callClassName;
         IdentifierType callReceiver;
-        HashMap<String, HashMap> callClassInfo;
-        HashMap<String, HashMap> methodInfo;
-        boolean complete = true;
+        ClassSymbol callClassInfo;
+        MethodSymbol methodInfo;
+        Type[] found = new Type[n.el.size()];
+        int[] argTypes = new int[n.el.size()];
         int i = 0;
 
         n.i.accept (this);
@@ -626,15 +643,14 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
         } else {
             callReceiver = (IdentifierType) returnType;
             callClassName = callReceiver.nameOfType;
-            callClassInfo = lookupTable.get(callClassName);
+            callClassInfo = lookupTable.lookup(callClassName);
 
             if (callClassInfo == null) {
                 sendErrorMessage(String.format("filename=%s:%03d:%03d -- Class %s does not exist.\n",
                         fileName, n.lineNumber, n.columnNumber, callClassName));
                 returnType = Type.THE_VOID_TYPE;
             } else {
-                methodInfo = callClassInfo.get(methodName);
-                if (methodInfo == null) {
+                if (!callClassInfo.hasMethod(methodName)) {
                     if (methodName.equals("_init")){
                         sendErrorMessage(String.format("filename=%s:%03d:%03d -- Class %s is not a record.\n",
                                 fileName, n.lineNumber, n.columnNumber, callClassName, methodName));
@@ -647,20 +663,21 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
                 } else {
                     // Iterate over the types of the args to find what method we are calling
                     for (Expression e : n.el) {
-                        argType = e.accept(this).toString();
-                        argTStr = argTStr.concat(argType.concat(", "));
-                        if (methodInfo != null && methodInfo.containsKey(argType)) {
-                            methodInfo = methodInfo.get(argType);
-                        } else {
-                            complete = false;
-                            methodInfo = null;
-                        }
+                        found[i] = e.accept(this);
+                        argTypes[i] = lookupTable.typeId(found[i]);
+                        i++;
                     }
-                    argTStr = argTStr.substring(0, Math.max(1, argTStr.length() - 2)).concat(")");
                     // did we find a valid function declaration?
-                    if (complete && methodInfo.containsKey("$end")) {
-                        returnType = stringToType((String)((HashMap<String, Object>)methodInfo.get("$end").get("$info")).get("$type"));
+                    methodInfo = callClassInfo.resolve(methodName, argTypes);
+                    annotations.call(n, methodInfo);
+                    if (methodInfo != null) {
+                        returnType = stringToType(methodInfo.type);
                     } else {
+                        // we only need to spell out what we were given if we have to complain about it
+                        for (Type t : found) {
+                            argTStr = argTStr.concat(t.toString().concat(", "));
+                        }
+                        argTStr = argTStr.substring(0, Math.max(1, argTStr.length() - 2)).concat(")");
                         // if not, our error message changes if it is a call to record initialization
                         if (methodName.equals("_init")){
                             sendErrorMessage(String.format("filename=%s:%03d:%03d -- Record %s%s is not declared.\n",
@@ -676,68 +693,69 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
             }
         }
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from call for %s.\n",
-                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s));
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from call for %s.\n",
+                fileName, n.i.lineNumber, n.i.columnNumber, n.i.s);
 
-        return returnType;
+        return note(n, returnType);
     }
 
     public Type visit (True n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting True...\n",
-                fileName, n.lineNumber, n.columnNumber));
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from True.\n",
-                fileName, n.lineNumber, n.columnNumber));
-        return Type.THE_BOOLEAN_TYPE;
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting True...\n",
+                fileName, n.lineNumber, n.columnNumber);
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from True.\n",
+                fileName, n.lineNumber, n.columnNumber);
+        return note(n, Type.THE_BOOLEAN_TYPE);
     }
 
     public Type visit (False n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting False...\n",
-                fileName, n.lineNumber, n.columnNumber));
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from call for True.\n",
-                fileName, n.lineNumber, n.columnNumber));
-        return Type.THE_BOOLEAN_TYPE;
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting False...\n",
+                fileName, n.lineNumber, n.columnNumber);
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from call for True.\n",
+                fileName, n.lineNumber, n.columnNumber);
+        return note(n, Type.THE_BOOLEAN_TYPE);
     }
 
     public Type visit (IntegerLiteral n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting IntegerLiteral...\n",
-                fileName, n.lineNumber, n.columnNumber));
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from IntegerLiteral.\n",
-                fileName, n.lineNumber, n.columnNumber));
-        return Type.THE_INTEGER_TYPE;
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting IntegerLiteral...\n",
+                fileName, n.lineNumber, n.columnNumber);
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from IntegerLiteral.\n",
+                fileName, n.lineNumber, n.columnNumber);
+        return note(n, Type.THE_INTEGER_TYPE);
     }
 
     // Subcompoents of identifier statement: String:s
     public Type visit (IdentifierExp n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting IdentifierExp...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting IdentifierExp...\n",
+                fileName, n.lineNumber, n.columnNumber);
 
         String type = null;
-        HashMap<String, String> var = varInMethod(n.s);
+        VarSymbol var = varInMethod(n.s);
+        annotations.var(n, var);
         if (var == null){
             sendErrorMessage(String.format("filename=%s:%03d:%03d -- Could not find variable %s within scope of " +
                     "class %s, method %s\n", fileName, n.lineNumber, n.columnNumber, n.s, currentClass, currentMethod));
         } else {
-            type = var.get("$type");
+            type = var.type;
         }
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from IdentifierExp.\n",
-                fileName, n.lineNumber, n.columnNumber));
-        return stringToType(type);
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from IdentifierExp.\n",
+                fileName, n.lineNumber, n.columnNumber);
+        return note(n, stringToType(type));
     }
 
     public Type visit (This n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting This...\n",
-                fileName, n.lineNumber, n.columnNumber));
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from This.\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting This...\n",
+                fileName, n.lineNumber, n.columnNumber);
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from This.\n",
+                fileName, n.lineNumber, n.columnNumber);
         // returns the class that this is in
-        return stringToType(currentClass);
+        return note(n, stringToType(currentClass));
     }
 
     // Expression e;
     public Type visit (NewArray n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting New Array...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting New Array...\n",
+                fileName, n.lineNumber, n.columnNumber);
         Type returnType;
         returnType = n.e.accept (this);
         if(!typesMatch(returnType, Type.THE_INTEGER_TYPE)){
@@ -745,15 +763,15 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
                             " found %s.\n",
                     fileName, n.lineNumber, n.columnNumber, returnType.toString()));
         }
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from New Array.\n",
-                fileName, n.lineNumber, n.columnNumber));
-        return Type.THE_INT_ARRAY_TYPE;
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from New Array.\n",
+                fileName, n.lineNumber, n.columnNumber);
+        return note(n, Type.THE_INT_ARRAY_TYPE);
     }
 
     // Identifier i;
     public Type visit (NewObject n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting New Object...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting New Object...\n",
+                fileName, n.lineNumber, n.columnNumber);
         Type returnType;
         n.i.accept(this);
         returnType = new IdentifierType(n.lineNumber, n.columnNumber, n.i.s);
@@ -763,15 +781,15 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
                     fileName, n.lineNumber, n.columnNumber, n.i.s));
         }
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from Object.\n",
-                fileName, n.lineNumber, n.columnNumber));
-        return returnType;
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from Object.\n",
+                fileName, n.lineNumber, n.columnNumber);
+        return note(n, returnType);
     }
 
     // Expression e;
     public Type visit (Not n) {
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting Not...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting Not...\n",
+                fileName, n.lineNumber, n.columnNumber);
         Type returnType;
         returnType = n.e.accept (this);
 
@@ -781,19 +799,19 @@ public final class LookupChecker implements SyntaxTreeVisitor <Type>  {
                     fileName, n.lineNumber, n.columnNumber, returnType.toString()));
         }
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning from Not.\n",
-                fileName, n.lineNumber, n.columnNumber));
-        return Type.THE_BOOLEAN_TYPE;
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning from Not.\n",
+                fileName, n.lineNumber, n.columnNumber);
+        return note(n, Type.THE_BOOLEAN_TYPE);
     }
 
     // String s;
     public Type visit (Identifier n) {
         Type varT;
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Visiting Identifier...\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Visiting Identifier...\n",
+                fileName, n.lineNumber, n.columnNumber);
 
-        sendDebugMessage(String.format("filename=%s:%03d:%03d -- Returning Identifier.\n",
-                fileName, n.lineNumber, n.columnNumber));
+        sendDebugMessage("filename=%s:%03d:%03d -- Returning Identifier.\n",
+                fileName, n.lineNumber, n.columnNumber);
 
         return Type.THE_VOID_TYPE;
     }
@@ -0,0 +1,340 @@
+package global;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import tree.*;
+
+// loop optimizations over the linearized statements of a method
+// a loop is a label with a jump back up to it from further down, like the whileStart label of IRWhile
+// we only touch loops that can only be entered by falling into their label, so we can put a preheader right
+// in front of it that runs once on the way in
+public class LoopOptimizer {
+
+    public int hoisted = 0;     // how many expressions we moved out of loops
+    private int c = 0;
+
+    // a loop, as the range of statements from its label to the last jump back to it
+    private static class Loop {
+        int head, tail;
+        Loop(int h, int t){ head = h; tail = t; }
+    }
+
+    // the loop state we need while hoisting: what the loop changes, and what we've already pulled out of it
+    private HashSet<NameOfTemp> defined;
+    private ArrayList<Exp> stores;
+    private boolean hasCall;
+    private ArrayList<Stm> preheader;
+    private ArrayList<Exp> hoistedExps;
+    private ArrayList<TEMP> hoistedTemps;
+    private ArrayList<Exp> guarded;         // loads the test in front of a rotated loop already did
+    private AliasAnalysis aliases;          // which loads the stores in a loop can change
+
+    public LoopOptimizer(){
+        this(new AliasAnalysis());
+    }
+
+    public LoopOptimizer(AliasAnalysis aliases){
+        this.aliases = aliases;
+    }
+
+    public List<Stm> optimize(List<Stm> statements){
+        ArrayList<Stm> stms = new ArrayList(statements);
+        HashSet<String> done = new HashSet();
+        Loop loop;
+
+        // innermost loops go first, so whatever they hoist can be hoisted again by the loops around them
+        while ((loop = nextLoop(stms, done)) != null){
+            done.add(((LABEL)stms.get(loop.head)).label.toString());
+            hoist(stms, loop);
+        }
+        return stms;
+    }
+
+    // the smallest loop we haven't looked at yet
+    private static Loop nextLoop(List<Stm> stms, HashSet<String> done){
+        HashMap<String, Integer> labels = new HashMap();
+        Loop best = null;
+        Integer head;
+
+        for (int i = 0; i < stms.size(); i++){
+            if (stms.get(i) instanceof LABEL){
+                labels.put(((LABEL)stms.get(i)).label.toString(), i);
+            }
+        }
+        for (int i = 0; i < stms.size(); i++){
+            for (NameOfLabel target: targets(stms.get(i))){
+                head = labels.get(target.toString());
+                if (head != null && head < i && !done.contains(target.toString())
+                        && (best == null || i - head < best.tail - best.head)){
+                    best = new Loop(head, i);
+                }
+            }
+        }
+        // the back jump we found might not be the last one
+        if (best != null){
+            for (int i = best.tail + 1; i < stms.size(); i++){
+                for (NameOfLabel target: targets(stms.get(i))){
+                    if (Integer.valueOf(best.head).equals(labels.get(target.toString()))){
+                        best.tail = i;
+                    }
+                }
+            }
+        }
+        return best;
+    }
+
+    public static List<NameOfLabel> targets(Stm s){
+        ArrayList<NameOfLabel> ret = new ArrayList();
+        if (s instanceof JUMP){
+            ret.addAll(((JUMP)s).targets);
+        } else if (s instanceof CJUMP){
+            ret.add(((CJUMP)s).iftrue);
+            ret.add(((CJUMP)s).iffalse);
+        }
+        return ret;
+    }
+
+    // can we only get into the loop by falling into its label?
+    private static boolean singleEntry(List<Stm> stms, Loop loop){
+        HashSet<String> inside = new HashSet();
+        for (int i = loop.head; i <= loop.tail; i++){
+            if (stms.get(i) instanceof LABEL){
+                inside.add(((LABEL)stms.get(i)).label.toString());
+            }
+        }
+        for (int i = 0; i < stms.size(); i++){
+            if (i < loop.head || i > loop.tail){
+                for (NameOfLabel target: targets(stms.get(i))){
+                    if (inside.contains(target.toString())){
+                        return false;
+                    }
+                }
+            }
+        }
+        // and the statement before it has to fall into it
+        return loop.head > 0
+                && !(stms.get(loop.head - 1) instanceof JUMP || stms.get(loop.head - 1) instanceof CJUMP);
+    }
+
+    // loop invariant code motion
+    // anything in the loop that works out to the same value on every trip around, and can't trap, gets worked
+    // out once in the preheader instead
+    private void hoist(ArrayList<Stm> stms, Loop loop){
+        int headerEnd = loop.tail;
+        Stm s;
+
+        if (!singleEntry(stms, loop)){
+            return;
+        }
+
+        defined = new HashSet();
+        stores = new ArrayList();
+        hasCall = false;
+        preheader = new ArrayList();
+        hoistedExps = new ArrayList();
+        hoistedTemps = new ArrayList();
+        guarded = new ArrayList();
+        findGuard(stms, loop);
+        // whatever we hoisted out of inner loops is in temps the alias analysis hasn't seen yet
+        aliases.analyze(stms);
+
+        for (int i = loop.head; i <= loop.tail; i++){
+            s = stms.get(i);
+            if (s instanceof MOVE && ((MOVE)s).dst instanceof TEMP){
+                defined.add(((TEMP)((MOVE)s).dst).temp);
+            } else if (s instanceof MOVE && ((MOVE)s).dst instanceof MEM){
+                stores.add(((MEM)((MOVE)s).dst).exp);
+            }
+            if (containsCall(s)){
+                hasCall = true;
+            }
+            if (headerEnd == loop.tail && (s instanceof JUMP || s instanceof CJUMP)){
+                headerEnd = i;
+            }
+        }
+
+        for (int i = loop.head + 1; i <= loop.tail; i++){
+            // the header runs every time we get into the loop, so even loads that might trap can come out of it
+            stms.set(i, hoistStm(stms.get(i), i <= headerEnd));
+        }
+        stms.addAll(loop.head, preheader);
+    }
+
+    private Stm hoistStm(Stm s, boolean inHeader){
+        if (s instanceof MOVE){
+            MOVE m = (MOVE)s;
+            if (m.dst instanceof MEM){
+                return new MOVE(new MEM(hoistAddress(((MEM)m.dst).exp, inHeader)), hoistExp(m.src, inHeader));
+            }
+            return new MOVE(m.dst, hoistExp(m.src, inHeader));
+        } else if (s instanceof EVAL){
+            return new EVAL(hoistExp(((EVAL)s).exp, inHeader));
+        } else if (s instanceof CJUMP){
+            CJUMP cj = (CJUMP)s;
+            return new CJUMP(cj.relop, hoistExp(cj.left, inHeader), hoistExp(cj.right, inHeader),
+                    cj.iftrue, cj.iffalse);
+        }
+        return s;
+    }
+
+    // a base plus a constant goes straight into the load or store, so only the base is worth hoisting
+    private Exp hoistAddress(Exp e, boolean inHeader){
+        if (e instanceof BINOP && (((BINOP)e).binop == BINOP.PLUS || ((BINOP)e).binop == BINOP.MINUS)
+                && ((BINOP)e).right instanceof CONST){
+            return new BINOP(((BINOP)e).binop, hoistExp(((BINOP)e).left, inHeader), ((BINOP)e).right);
+        }
+        return hoistExp(e, inHeader);
+    }
+
+    private Exp hoistExp(Exp e, boolean inHeader){
+        TEMP t;
+        if ((e instanceof BINOP || e instanceof MEM) && invariant(e, inHeader)){
+            // pull the pieces out first, so that anything they have in common only gets worked out once
+            if (e instanceof BINOP){
+                e = new BINOP(((BINOP)e).binop, hoistExp(((BINOP)e).left, inHeader),
+                        hoistExp(((BINOP)e).right, inHeader));
+            } else {
+                e = new MEM(hoistAddress(((MEM)e).exp, inHeader));
+            }
+            for (int i = 0; i < hoistedExps.size(); i++){
+                if (same(hoistedExps.get(i), e)){
+                    return hoistedTemps.get(i);
+                }
+            }
+            t = new TEMP(new NameOfTemp(String.format("licm%03d", ++c)));
+            preheader.add(new MOVE(t, e));
+            hoistedExps.add(e);
+            hoistedTemps.add(t);
+            hoisted++;
+            return t;
+        }
+
+        if (e instanceof BINOP){
+            return new BINOP(((BINOP)e).binop, hoistExp(((BINOP)e).left, inHeader),
+                    hoistExp(((BINOP)e).right, inHeader));
+        } else if (e instanceof MEM){
+            return new MEM(hoistAddress(((MEM)e).exp, inHeader));
+        } else if (e instanceof CALL){
+            ArrayList<Exp> args = new ArrayList();
+            if (((CALL)e).args != null){
+                for (Exp arg: ((CALL)e).args.toList()){
+                    args.add(hoistExp(arg, inHeader));
+                }
+            }
+            return new CALL(((CALL)e).func, args);
+        }
+        return e;
+    }
+
+    // does e work out the same every time around the loop?
+    private boolean invariant(Exp e, boolean inHeader){
+        if (e instanceof CONST || e instanceof NAME){
+            return true;
+        } else if (e instanceof TEMP){
+            return !defined.contains(((TEMP)e).temp) && !(hasCall && clobbered(((TEMP)e).temp));
+        } else if (e instanceof BINOP){
+            // division can trap, so it has to stay where it is
+            return ((BINOP)e).binop != BINOP.DIV
+                    && invariant(((BINOP)e).left, inHeader) && invariant(((BINOP)e).right, inHeader);
+        } else if (e instanceof MEM){
+            Exp addr = ((MEM)e).exp;
+            if (!invariant(addr, inHeader) || (!inHeader && !AliasAnalysis.safeLoad(addr) && !isGuarded(e))){
+                return false;
+            }
+            // calls can change anything on the heap, but nothing in our frame
+            if (hasCall && !aliases.isFrame(addr)){
+                return false;
+            }
+            for (Exp store: stores){
+                if (aliases.mayAlias(addr, store)){
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // a rotated while loop is only entered after its test passes once in front of it, so whatever that test loaded
+    // can be loaded again in the preheader without any chance of trapping
+    private void findGuard(List<Stm> stms, Loop loop){
+        HashSet<String> entry = new HashSet();
+        CJUMP guard;
+        int g = loop.head;
+        while (g >= 0 && stms.get(g) instanceof LABEL){
+            entry.add(((LABEL)stms.get(g)).label.toString());
+            g--;
+        }
+        if (g >= 0 && stms.get(g) instanceof CJUMP && entry.contains(((CJUMP)stms.get(g)).iftrue.toString())){
+            guard = (CJUMP)stms.get(g);
+            loads(guard.left, guarded);
+            loads(guard.right, guarded);
+        }
+    }
+
+    private static void loads(Exp e, List<Exp> found){
+        if (e instanceof MEM){
+            found.add(e);
+            loads(((MEM)e).exp, found);
+        } else if (e instanceof BINOP){
+            loads(((BINOP)e).left, found);
+            loads(((BINOP)e).right, found);
+        }
+    }
+
+    private boolean isGuarded(Exp e){
+        for (Exp g: guarded){
+            if (same(g, e)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean containsCall(Stm s){
+        if (s instanceof MOVE){
+            return containsCall(((MOVE)s).dst) || containsCall(((MOVE)s).src);
+        } else if (s instanceof EVAL){
+            return containsCall(((EVAL)s).exp);
+        } else if (s instanceof CJUMP){
+            return containsCall(((CJUMP)s).left) || containsCall(((CJUMP)s).right);
+        }
+        return false;
+    }
+
+    private static boolean containsCall(Exp e){
+        if (e instanceof CALL){
+            return true;
+        } else if (e instanceof BINOP){
+            return containsCall(((BINOP)e).left) || containsCall(((BINOP)e).right);
+        } else if (e instanceof MEM){
+            return containsCall(((MEM)e).exp);
+        }
+        return false;
+    }
+
+    // the outgoing and global registers don't make it through a call
+    private static boolean clobbered(NameOfTemp t){
+        return t.toString().startsWith("%o") || t.toString().startsWith("%g");
+    }
+
+    // are two expressions the same tree?
+    public static boolean same(Exp a, Exp b){
+        if (a instanceof CONST && b instanceof CONST){
+            return ((CONST)a).value == ((CONST)b).value;
+        } else if (a instanceof TEMP && b instanceof TEMP){
+            return ((TEMP)a).temp.equals(((TEMP)b).temp);
+        } else if (a instanceof NAME && b instanceof NAME){
+            return ((NAME)a).label.toString().equals(((NAME)b).label.toString());
+        } else if (a instanceof MEM && b instanceof MEM){
+            return same(((MEM)a).exp, ((MEM)b).exp);
+        } else if (a instanceof BINOP && b instanceof BINOP){
+            return ((BINOP)a).binop == ((BINOP)b).binop
+                    && same(((BINOP)a).left, ((BINOP)b).left) && same(((BINOP)a).right, ((BINOP)b).right);
+        }
+        return false;
+    }
+}
@@ -3,20 +3,38 @@ package global;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Arrays;
 
 import assem.*;
 import tree.*;
 
 public class MaximalMunch {
 
+    public static final String SPILL_PREFIX = "spill";                 // what temps holding reloaded spills start with
+
     public HashMap<NameOfTemp, String> tempMap = new HashMap(); // temp map to use with formatting
     private String memStr, memComment;                          // where are we holding a mem?
-    public ArrayList<NameOfTemp> currentTemps = new ArrayList();       // what are the current, relevant temps
-    // NOTE: once we use a temp as a source, we can get rid of it to minimize the space we need to manage
-    public ArrayList<String> allocatedRegs = new ArrayList();          // what registers are we using to hold relevant temps
-    public int maxTemps = 0;                                           // what is the maximum number of temps we've had be relevant at once?
+    private ArrayList<NameOfTemp> memTemps = new ArrayList();   // and what temps does that mem use (`m0 and `m1)
+    private HashMap<NameOfTemp, Integer> spillSlots = new HashMap();   // temps that live on the stack, and their slot
+    private RegisterAllocator allocator;                                // hands registers out to our temps
+    public int maxTemps = 0;                                           // how many stack slots do our spilled temps need?
+    public long allocTime = 0;                                         // nanoseconds spent allocating registers
+    public final boolean leaf;                                         // are we running in our caller's window?
+    private Stm next;                                                  // the statement after the one we're munching
 
     public MaximalMunch(){
+        this(new GraphColorAllocator());
+    }
+
+    public MaximalMunch(RegisterAllocator allocator){
+        this(allocator, false);
+    }
+
+    // leaf methods never save a register window, so their incoming args are still in our caller's %o registers,
+    // and the caller's %l registers have to be left alone
+    public MaximalMunch(RegisterAllocator allocator, boolean leaf){
+        this.allocator = allocator;
+        this.leaf = leaf;
         String incoming, outgoing, locals, globals;
         for (int i = 0; i < 8; i++){
             incoming = String.format("%%i%d", i);
@@ -30,6 +48,23 @@ public class MaximalMunch {
         }
         tempMap.put(new NameOfTemp("%fp"), "%fp");
         tempMap.put(new NameOfTemp("%sp"), "%sp");
+
+        if (leaf){
+            for (int i = 0; i < 8; i++){
+                tempMap.put(new NameOfTemp(String.format("%%i%d", i)), String.format("%%o%d", i));
+                allocator.reserve(String.format("%%l%d", i));
+            }
+        }
+    }
+
+    // does the method call anything, or can it be a leaf?
+    public boolean hasCall(List<Instruction> instructions){
+        for (Instruction i: instructions){
+            if (FlowGraph.isCall(FlowGraph.opcode(i, tempMap))){
+                return true;
+            }
+        }
+        return false;
     }
 
     public List<String> formatStms(List<Stm> statements){
@@ -48,91 +83,144 @@ public class MaximalMunch {
         return lines;
     }
 
+    // select instructions for the statements, then color the temps
+    // if we run out of registers, the spilled temps get a stack slot and we select again, now with spill code
     public List<Instruction> maximalMunch(List<Stm> statements){
-        ArrayList<Instruction> munched = new ArrayList();
+        ArrayList<Instruction> munched;
+        List<NameOfTemp> spills;
+        long start;
+
+        do {
+            c = 0;
+            sc = 0;
+            munched = new ArrayList();
+            for (int i = 0; i < statements.size(); i++){
+                next = i + 1 < statements.size() ? statements.get(i + 1) : null;
+                munchStm(statements.get(i), munched);
+            }
 
-        for (Stm s: statements){
-            munched.addAll(maximalMunch(s));
-        }
+            start = System.nanoTime();
+            spills = allocator.allocate(munched, tempMap);
+            allocTime += System.nanoTime() - start;
+            for (NameOfTemp t: spills){
+                if (t.toString().startsWith(SPILL_PREFIX) || spillSlots.containsKey(t)){
+                    throw new UnsupportedOperationException(
+                            String.format("Could not find a register for spill temp %s", t));
+                }
+                spillSlots.put(t, spillSlots.size() + 1);
+            }
+        } while (!spills.isEmpty());
+
+        maxTemps = spillSlots.size();
         return munched;
     }
 
     public List<Instruction> maximalMunch(Stm s){
-        ArrayList<Instruction> munched = new ArrayList();
-        munchStm(s, munched);
-
-        return munched;
+        ArrayList<Stm> statements = new ArrayList();
+        statements.add(s);
+        return maximalMunch(statements);
     }
 
-    private int c = 0;
+    private int c = 0, sc = 0;
     private NameOfTemp generateTemp(){
         return generateTemp("t");
     }
 
+    public RegisterAllocator getAllocator(){ return allocator; }
+
+    // the stack slot of every temp we had to spill, counting down from the locals
+    public HashMap<NameOfTemp, Integer> getSpillSlots(){ return spillSlots; }
+
+    // temps are named in the order we munch, so munching the same statements again gives the same temps
     private NameOfTemp generateTemp(String tName){
-        NameOfTemp t = new NameOfTemp(String.format("%s%03d", tName, ++c));
-        putTemp(t);
-        return t;
+        return new NameOfTemp(String.format("%s%03d", tName, ++c));
     }
 
-    // where do we add our temp into the list/in memory?
-    private void putTemp(NameOfTemp t){
-        String loc = null;
-        boolean set = false;
-
-        // see if the local registers are allocated
-        for (int l = 0; !set &&  l < 8; l++){
-            loc = "%l" + l;
-            // if the register isn't allocated
-            if (!allocatedRegs.contains(loc)){
-                tempMap.put(t, loc);
-                allocatedRegs.add(loc);
-                currentTemps.add(t);
-                set = true;
+    // where does a spilled temp live on the stack? right below the locals
+    private String spillLoc(NameOfTemp t){
+        return String.format("[%%fp - 4*(LOCS+%d)]", spillSlots.get(t));
+    }
+
+    // every instruction goes through here so that spilled temps get loaded before and stored after use
+    private void emit(List<Instruction> addTo, String assem, String comment, NameOfTemp dst, NameOfTemp... srcs){
+        emit(addTo, false, assem, comment, dst, srcs);
+    }
+
+    private void emitMove(List<Instruction> addTo, String assem, String comment, NameOfTemp dst, NameOfTemp src){
+        emit(addTo, true, assem, comment, dst, src);
+    }
+
+    private void emit(List<Instruction> addTo, boolean move, String assem, String comment,
+                      NameOfTemp dst, NameOfTemp... srcs){
+        HashMap<NameOfTemp, NameOfTemp> reloaded = new HashMap();
+        NameOfTemp spilledDst = null, reload;
+
+        for (int i = 0; i < srcs.length; i++){
+            if (srcs[i] != null && spillSlots.containsKey(srcs[i])){
+                reload = reloaded.get(srcs[i]);
+                if (reload == null){
+                    reload = new NameOfTemp(String.format("%s%03d", SPILL_PREFIX, ++sc));
+                    addTo.add(new OperationInstruction(
+                            String.format("\tld\t%s, `d0", spillLoc(srcs[i])),
+                            String.format("%s := %s (reload)", reload, srcs[i]),
+                            reload
+                    ));
+                    reloaded.put(srcs[i], reload);
+                }
+                srcs[i] = reload;
             }
         }
-        // if we couldn't find a place for it, try putting it in the outgoing registers
-        for (int o = 0; !set && o < 6; o++){
-            loc = "%o" + o;
-            // if the register isn't allocated
-            if (!allocatedRegs.contains(loc)){
-                tempMap.put(t, loc);
-                allocatedRegs.add(loc);
-                currentTemps.add(t);
-                set = true;
-            }
+        if (dst != null && spillSlots.containsKey(dst)){
+            spilledDst = dst;
+            dst = new NameOfTemp(String.format("%s%03d", SPILL_PREFIX, ++sc));
         }
-        // if we couldn't find a place for it then, try putting it in the global registers
-        for (int g = 1; !set && g < 8; g++){
-            loc = "%g" + g;
-            // if the register isn't allocated
-            if (!allocatedRegs.contains(loc)){
-                tempMap.put(t, loc);
-                allocatedRegs.add(loc);
-                currentTemps.add(t);
-                set = true;
-            }
+
+        if (move){
+            addTo.add(new MoveInstruction(assem, comment, dst, srcs[0]));
+        } else {
+            addTo.add(new OperationInstruction(assem, comment, dst, srcs));
         }
 
-        // If we still haven't found a place for it, well oopsie daisy
-        if (!set) {
-            // store it in the heap, just above the formals
-            // requires more handling than I can put it in at the moment
-            loc = String.format("%%fp - 4*(LOCLS+%d)", currentTemps.size() - 8);
-            tempMap.put(t, loc);
-            allocatedRegs.add(loc);
-            currentTemps.add(t);
+        if (spilledDst != null){
+            addTo.add(new OperationInstruction(
+                    String.format("\tst\t`s0, %s", spillLoc(spilledDst)),
+                    String.format("%s := %s (spill)", spilledDst, dst),
+                    null, dst
+            ));
         }
+    }
+
+    // our mem string uses `m0 and `m1 for its temps, so we move those over to wherever the instruction has them
+    private String memAt(int first){
+        return memStr.replace("`m0", "`s" + first).replace("`m1", "`s" + (first + 1));
+    }
 
-        // if we need more temp space, make sure to note that
-        if (currentTemps.size() > maxTemps ){
-            maxTemps = currentTemps.size();
+    // sources of an instruction that takes the given temps, then the temps of our mem
+    private NameOfTemp[] withMem(NameOfTemp... leading){
+        NameOfTemp[] srcs = new NameOfTemp[leading.length + memTemps.size()];
+        for (int i = 0; i < leading.length; i++){
+            srcs[i] = leading[i];
         }
+        for (int i = 0; i < memTemps.size(); i++){
+            srcs[leading.length + i] = memTemps.get(i);
+        }
+        return srcs;
+    }
+
+    // load whatever our last munched mem points at into to
+    private void loadMem(NameOfTemp to, List<Instruction> addTo){
+        emit(addTo,
+                String.format("\tld\t%s, `d0", memAt(0)),
+                String.format("%s := MEM%s", to.toString(), memComment),
+                to, withMem());
     }
 
-    private void removeTemp(NameOfTemp t){
-        allocatedRegs.remove(tempMap.get(t));
-        currentTemps.remove(t);
+    // store from into whatever our last munched mem points at
+    private void storeMem(NameOfTemp from, List<Instruction> addTo){
+        emit(addTo,
+                String.format("\tst\t`s0, %s", memAt(1)),
+                String.format("MEM%s := %s", memComment, from.toString()),
+                null, withMem(from));
     }
 
     // statement subtypes
@@ -161,47 +249,28 @@ public class MaximalMunch {
     // only care about storing most recent temp if there is a temp involved
     private NameOfTemp munchMove(MOVE m, List<Instruction> addTo){
         NameOfTemp to = null, from;
-        MoveInstruction mov;
 
         if (m.src instanceof MEM){
             if (m.dst instanceof MEM){
                 from = generateTemp("asgn");
 
                 munchMem((MEM)m.src, addTo);
-                addTo.add( new OperationInstruction(
-                        String.format("\tld\t%s, `d0", memStr),
-                        String.format("%s := MEM%s", from.toString(), memComment),
-                        from, null
-                ));
+                loadMem(from, addTo);
 
                 munchMem((MEM)m.dst, addTo);
-                addTo.add( new OperationInstruction(
-                        String.format("\tst\t`s0, %s", memStr),
-                        String.format("MEM%s := %s", memComment, from.toString()),
-                        null, from
-                ));
-                removeTemp(from);
+                storeMem(from, addTo);
 
             } else {
                 to = munchExp(m.dst, addTo);
                 munchMem((MEM)m.src, addTo);
-                addTo.add( new OperationInstruction(
-                        String.format("\tld\t%s, `d0", memStr),
-                        String.format("%s := MEM%s", to.toString(), memComment),
-                        to, null
-                ));
+                loadMem(to, addTo);
             }
         } else {
             if (m.dst instanceof MEM){
                 from = munchExp(m.src, addTo);
 
                 munchMem((MEM)m.dst, addTo);
-                addTo.add( new OperationInstruction(
-                        String.format("\tst\t`s0, %s", memStr),
-                        String.format("MEM%s := %s", memComment, from.toString()),
-                        null, from
-                ));
-                removeTemp(from);
+                storeMem(from, addTo);
 
             } else {
                 // get the destination our result ended up in
@@ -209,10 +278,8 @@ public class MaximalMunch {
                 // get the destination we are moving our thing to
                 to = munchExp(m.dst, addTo);
 
-                mov = new MoveInstruction("\tmov\t`s0, `d0",
+                emitMove(addTo, "\tmov\t`s0, `d0",
                         String.format("%s := %s", to.toString(), from.toString()), to, from);
-                addTo.add(mov);
-                removeTemp(from);
             }
         }
 
@@ -232,6 +299,9 @@ public class MaximalMunch {
 
     // unconditional jump, JUMP inheritly has the list of targets in j.targets
     private NameOfTemp munchJump(JUMP j, List<Instruction> addTo){
+        if (j.exp instanceof CALL){
+            return munchTailCall((CALL)j.exp, addTo);
+        }
         addTo.add(new OperationInstruction(String.format("\tba\t`j%d", 0), "unconditional GOTO",
                     null, null, j.targets));
         addTo.add(new OperationInstruction("\tnop", "delay for jump"));
@@ -295,63 +365,54 @@ public class MaximalMunch {
 
     // we need to handle mems, consts, and temps
     private NameOfTemp munchCJump(CJUMP c, List<Instruction> addTo){
-        Exp c1 = c.left, c2 = c.right;
         NameOfTemp tl, tr;
-        int r = c.relop, right;
+        int r = c.relop;
         // where we jump to depends on the condition
         String asm = cJumpToASM(r), op = cJumpToOper(r);
 
         if (c.left instanceof MEM){
             tl = generateTemp("cmp");
             munchMem((MEM)c.left, addTo);
-            addTo.add(new OperationInstruction(
-                    String.format("\tld\t%s, `d0", memStr),
-                    String.format("%s := MEM%s", tl.toString(), memComment),
-                    tl, null
-            ));
+            loadMem(tl, addTo);
         } else {
             tl = munchExp(c.left, addTo);
         }
 
-        if (c.right instanceof CONST){
-            addTo.add( new OperationInstruction(
+        if (isImmediate(c.right)){
+            emit(addTo,
                     String.format("\tcmp\t`s0, %d", ((CONST)c.right).value),
                     String.format("Test if %s %s %d", tl.toString(), op, ((CONST)c.right).value),
                     null, tl
-            ));
-            removeTemp(tl);
+            );
         } else if (c.right instanceof MEM){
             tr = generateTemp("asgn");
             munchMem((MEM)c.right, addTo);
-            addTo.add(new OperationInstruction(
-                    String.format("\tld\t%s, `d0", memStr),
-                    String.format("%s := MEM%s", tr.toString(), memComment),
-                    tr, null
-            ));
+            loadMem(tr, addTo);
 
-            addTo.add( new OperationInstruction(
+            emit(addTo,
                     String.format("\tcmp\t`s0, `s1"),
                     String.format("Test if %s %s %s", tl.toString(), op, tr.toString()),
                     null, tl, tr
-            ));
-            removeTemp(tl);
-            removeTemp(tr);
+            );
         } else {
             tr = munchExp(c.right, addTo);
-            addTo.add( new OperationInstruction(
+            emit(addTo,
                     String.format("\tcmp\t`s0, `s1"),
                     String.format("Test if %s %s %s", tl.toString(), op, tr.toString()),
                     null, tl, tr
-            ));
-            removeTemp(tl);
-            removeTemp(tr);
+            );
         }
 
+        // the register allocator needs to know where we can go from here
         addTo.add(new OperationInstruction(
-                String.format("\t%s\t%s", asm, c.iftrue)));
-        addTo.add(new OperationInstruction("\tnop", "delay slot"));
-        addTo.add(new OperationInstruction(String.format("\tba\t%s", c.iffalse)));
+                String.format("\t%s\t`j0", asm), "conditional GOTO", null, null, Arrays.asList(c.iftrue)));
         addTo.add(new OperationInstruction("\tnop", "delay slot"));
+        // once the blocks are laid out in traces, we can just fall into the false label
+        if (!(next instanceof LABEL && ((LABEL)next).label.toString().equals(c.iffalse.toString()))){
+            addTo.add(new OperationInstruction(
+                    "\tba\t`j0", "unconditional GOTO", null, null, Arrays.asList(c.iffalse)));
+            addTo.add(new OperationInstruction("\tnop", "delay slot"));
+        }
 
         return null;
     }
@@ -382,7 +443,7 @@ public class MaximalMunch {
         } else if (e instanceof RET) {
             return munchRet((RET)e, addTo);
         } else if (e instanceof MEM) {
-            return munchMem((MEM)e, addTo);
+            return munchMemValue((MEM)e, addTo);
         } else if (e instanceof NAME) {
             return munchName((NAME)e, addTo);
         } else if (e instanceof TEMP) {
@@ -458,7 +519,7 @@ public class MaximalMunch {
     // going to have to rework to manage Stan's temps
     private NameOfTemp munchBinOp(BINOP b, List<Instruction> addTo){
 
-        boolean lConst = b.left instanceof CONST, rConst = b.right instanceof CONST;
+        boolean lConst = isImmediate(b.left), rConst = isImmediate(b.right);
         CONST l, r;
         NameOfTemp tRight, tLeft, tRet;
         int i = b.binop;
@@ -473,105 +534,81 @@ public class MaximalMunch {
             // store the left constant into a temp
             tLeft = munchConst(l, addTo);
             // add the result from the operation back into the same place
-            addTo.add(new OperationInstruction(
+            emit(addTo,
                         String.format("\t%s\t`s%d, %d, `d%d", oper, 0, r.value, 0),
                         String.format("%s := %s %s %d", tRet, tLeft, symbol, r.value),
-                        tRet, tLeft)
+                        tRet, tLeft
             );
-            removeTemp(tLeft);
 
         } else if (lConst){
             l = (CONST) b.left;
             // just use the left side so we can return easily
             if (b.right instanceof MEM){
                 munchMem((MEM)b.right, addTo);
-                addTo.add(new OperationInstruction(
-                        String.format("\tld\t%s, `d0", memStr),
-                        String.format("%s := MEM%s", tRet.toString(), memComment),
-                        tRet, null
-                ));
+                loadMem(tRet, addTo);
 
-                addTo.add(new OperationInstruction(
+                emit(addTo,
                         String.format("\t%s\t`s0, %d, `d0", oper, l.value),
                         String.format("%s := %s %s %d", tRet.toString(), tRet.toString(), symbol, l.value),
                         tRet, tRet
-                ));
-                // do not remove since we are storing in place
+                );
+                // we are storing in place
 
             } else {
                 tLeft = munchExp(b.right, addTo);
-                addTo.add(new OperationInstruction(
+                emit(addTo,
                         String.format("\t%s\t`s0, %d, `d0", oper, l.value),
                         String.format("%s := %s %s %d", tRet.toString(), tLeft.toString(), symbol, l.value),
-                        tRet, tLeft)
+                        tRet, tLeft
                 );
-                removeTemp(tLeft);
             }
         } else if (rConst){
             r = (CONST) b.right;
 
             if (b.left instanceof MEM){
                 munchMem((MEM)b.left, addTo);
-                addTo.add(new OperationInstruction(
-                        String.format("\tld\t%s, `d0", memStr),
-                        String.format("%s := MEM%s", tRet.toString(), memComment),
-                        tRet, null
-                ));
+                loadMem(tRet, addTo);
 
-                addTo.add(new OperationInstruction(
+                emit(addTo,
                         String.format("\t%s\t`s0, %d, `d0", oper, r.value),
                         String.format("%s := %s %s %d", tRet.toString(), tRet.toString(), symbol, r.value),
                         tRet, tRet
-                ));
-                // do not remove since we are storing in place
+                );
+                // we are storing in place
 
             } else {
                 tLeft = munchExp(b.left, addTo);
                 // add the result from the operation back into the same place
-                addTo.add(new OperationInstruction(
+                emit(addTo,
                         String.format("\t%s\t`s0, %d, `d0", oper, r.value),
                         String.format("%s := %s %s %d", tRet.toString(), tLeft.toString(), symbol, r.value),
                         tRet, tLeft
-                ));
-                removeTemp(tLeft);
+                );
             }
         // all of the constant cases have been handled
         } else {
             if (b.left instanceof MEM){
                 munchMem((MEM)b.left, addTo);
-                addTo.add(new OperationInstruction(
-                        String.format("\tld\t%s, `d0", memStr),
-                        String.format("%s := MEM%s", tRet.toString(), memComment),
-                        tRet, null
-                ));
+                loadMem(tRet, addTo);
 
                 if (b.right instanceof MEM){
                     tRight = generateTemp("mem");
                     munchMem((MEM)b.right, addTo);
+                    loadMem(tRight, addTo);
 
-                    addTo.add(new OperationInstruction(
-                            String.format("\tld\t%s, `d0", memStr),
-                            String.format("%s := MEM%s", tRight.toString(), memComment),
-                            tRight, null
-                    ));
-
-                    addTo.add(new OperationInstruction(
+                    emit(addTo,
                             String.format("\t%s\t`s0, `s1, `d0", oper),
                             String.format("%s := %s %s %s", tRet, tRet, symbol, tRight),
                             tRet, tRet, tRight
-                    ));
-                    // only remove tRight since we are storing tRet in place
-                    removeTemp(tRight);
+                    );
 
                 } else {
                     tRight = munchExp(b.right, addTo);
-                    addTo.add(new OperationInstruction(
+                    emit(addTo,
                             String.format("\t%s\t`s0, `s1, `d0", oper),
                             String.format("%s := %s %s %s", tRet, tRet, symbol, tRight),
                             tRet, tRet, tRight
-                    ));
-                    // only remove tRight since we are storing tRet in place
-                    removeTemp(tRight);
+                    );
                 }
             // left expression is not memory
             } else {
@@ -579,30 +616,21 @@ public class MaximalMunch {
                 if (b.right instanceof MEM){
                     tRight = generateTemp("mem");
                     munchMem((MEM)b.right, addTo);
+                    loadMem(tRight, addTo);
 
-                    addTo.add(new OperationInstruction(
-                            String.format("\tld\t%s, `d0", memStr),
-                            String.format("%s := MEM%s", tRight.toString(), memComment),
-                            tRight, null
-                    ));
-
-                    addTo.add(new OperationInstruction(
+                    emit(addTo,
                             String.format("\t%s\t`s0, `s1, `d0", oper),
                             String.format("%s := %s %s %s", tRet, tLeft, symbol, tRight),
                             tRet, tLeft, tRight
-                    ));
-                    removeTemp(tLeft);
-                    removeTemp(tRight);
+                    );
                 // right expression is not memory
                 } else {
                     tRight = munchExp(b.right, addTo);
-                    addTo.add(new OperationInstruction(
+                    emit(addTo,
                             String.format("\t%s\t`s0, `s1, `d0", oper),
                             String.format("%s := %s %s %s", tRet, tLeft, symbol, tRight),
                             tRet, tLeft, tRight
-                    ));
-                    removeTemp(tLeft);
-                    removeTemp(tRight);
+                    );
                 }
             }
         }
@@ -611,79 +639,75 @@ public class MaximalMunch {
     }
 
     private NameOfTemp munchCall(CALL c, List<Instruction> addTo){
-        NameOfTemp t;
+        NameOfTemp t, out;
+        ArrayList<NameOfTemp> outgoing = new ArrayList();
         int argNum = 0;
         String s = ((NAME)c.func).label.toString();
         // in general, move the expressions into their places, call, add a nop, then move o1 into a temp
-        // handle special cases of print and alloc
+        // the outgoing registers are precolored temps, so the allocator keeps everything else out of them
         addTo.add(new Comment(String.format("preparation to call %s", s)));
-        if (s.equals("print_int") || s.equals("alloc_object")){
-            if (c.args.head instanceof CONST){
-                addTo.add(new OperationInstruction(
-                        String.format("\tset\t%d, %%o0", ((CONST)c.args.head).value),
-                        String.format("%%o0 := %d", ((CONST) c.args.head).value)
-                ));
-            } else if (c.args.head instanceof MEM){
-                munchMem((MEM)c.args.head, addTo);
-
-                addTo.add(new OperationInstruction(
-                        String.format("\tld\t%s, %%o0", memStr),
-                        String.format("%%o0 := MEM%s", memComment)
-                ));
+        for (Exp arg: c.args.toList()){
+            out = new NameOfTemp(String.format("%%o%d", argNum));
+            if (arg instanceof CONST){
+                emit(addTo,
+                        String.format("\tset\t%d, `d0", ((CONST)arg).value),
+                        String.format("%%o%d := %d", argNum, ((CONST) arg).value),
+                        out
+                );
+            } else if (arg instanceof MEM){
+                munchMem((MEM)arg, addTo);
+                loadMem(out, addTo);
             // not mem, not const
             } else {
-                t = munchExp(c.args.head, addTo);
+                t = munchExp(arg, addTo);
 
-                addTo.add(new MoveInstruction(
-                        "\tmov\t`s0, %o0", String.format("%%o0 := %s", t.toString()), null, t
-                ));
-                removeTemp(t);
-            }
-        } else {
-            // handles all user specified calls with java format
-            for (Exp arg: c.args.toList()){
-                if (arg instanceof CONST){
-                    addTo.add(new OperationInstruction(
-                            String.format("\tset\t%d, %%o%d", ((CONST)arg).value, argNum),
-                            String.format("%%o%d := %d", argNum, ((CONST) arg).value)
-                    ));
-                } else if (arg instanceof MEM){
-                    munchMem((MEM)arg, addTo);
-
-                    addTo.add(new OperationInstruction(
-                            String.format("\tld\t%s, %%o%d", memStr, argNum),
-                            String.format("%%o%d := MEM%s", argNum, memComment)
-                    ));
-                // not mem, not const
-                } else {
-                    t = munchExp(arg, addTo);
-
-                    addTo.add(new MoveInstruction(
-                            String.format("\tmov\t`s0, %%o%d", argNum),
-                            String.format("%%o%d := %s", argNum, t.toString()), null, t
-                    ));
-                    removeTemp(t);
-                }
-                argNum++;
+                emitMove(addTo,
+                        "\tmov\t`s0, `d0",
+                        String.format("%%o%d := %s", argNum, t.toString()), out, t
+                );
             }
+            outgoing.add(out);
+            argNum++;
         }
 
-        // call
-        addTo.add(new OperationInstruction(String.format("\tcall\t%s", s)));
+        // call, which uses all of our outgoing registers
+        emit(addTo, String.format("\tcall\t%s", s), String.format("%s(%d args)", s, argNum),
+                null, outgoing.toArray(new NameOfTemp[0]));
         // delay slot
         addTo.add(new OperationInstruction("\tnop", "delay after returning from call"));
 
         return new NameOfTemp("%o0");
     }
 
+    // a tail call, with its args already moved into our %i registers
+    // restore in the delay slot hands our window back, so the args show up in the callee's %o registers and it
+    // returns straight to our caller. the %o7 the call writes goes away with our window
+    private NameOfTemp munchTailCall(CALL c, List<Instruction> addTo){
+        ArrayList<NameOfTemp> incoming = new ArrayList();
+        String s = ((NAME)c.func).label.toString();
+        for (Exp arg: c.args.toList()){
+            incoming.add(((TEMP)arg).temp);
+        }
+        emit(addTo, String.format("\tcall\t%s", s), String.format("tail call %s(%d args)", s, incoming.size()),
+                null, incoming.toArray(new NameOfTemp[0]));
+        addTo.add(new OperationInstruction("\trestore", "In the delay slot"));
+
+        return null;
+    }
+
+    // instructions only have 13 bits for a constant, anything bigger has to be set into a register first
+    static boolean isImmediate(Exp e){
+        return e instanceof CONST && ((CONST)e).value >= -4096 && ((CONST)e).value <= 4095;
+    }
+
     // we can handle consts in our binop, call, etc.
     // but for some things left operands must be registers, so we add a move instruction into store
     private NameOfTemp munchConst(CONST c, List<Instruction> addTo){
         NameOfTemp store = generateTemp("const");
-        addTo.add(new MoveInstruction(
+        emit(addTo,
                 String.format("\tset\t%d, `d0", c.value),
                 String.format("%s := %d", store.toString(), c.value),
-                store, null));
+                store);
 
         return store;
     }
@@ -700,9 +724,9 @@ public class MaximalMunch {
     }
 
     // mems result in [address]
-    // this puts the string representing the mem into memStr
+    // this puts the string representing the mem into memStr, with its temps as `m0 and `m1 held in memTemps
     // loading values from memory into registers and storing values from registers into memory should be
-    //          handled by the operation that wants to do it
+    //          handled by the operation that wants to do it (see loadMem and storeMem)
     private NameOfTemp munchMem(MEM m, List<Instruction> addTo){
         BINOP b; Exp el, er;
         int oper; String opRep;
@@ -716,112 +740,122 @@ public class MaximalMunch {
 
             // mem can only work with these two
             if (oper == BINOP.PLUS || oper == BINOP.MINUS) {
-                if (el instanceof CONST) {
-                    if (er instanceof CONST) {
-                        memStr = String.format("[%d %s %d]", ((CONST) el).value, opRep, ((CONST) er).value);
-                        memComment = memStr;
-                    } else if (er instanceof MEM) {
-                        tr = munchExp(er, addTo);
-                        addTo.add(new MoveInstruction(
-                                String.format("\tld\t%s, `d0"),
-                                String.format("%s := MEM%s", tr.toString(), memComment),
-                                tr, null));
-
-                        memStr = String.format("[%d %s %s]", ((CONST) el).value, opRep, tempMap.get(tr));
-                        memComment = String.format("[%d %s %s]", ((CONST) el).value, opRep, tr.toString());
+                // two constants are just one address
+                if (el instanceof CONST && er instanceof CONST) {
+                    return munchMem(new MEM(new CONST(oper == BINOP.PLUS ? ((CONST) el).value + ((CONST) er).value
+                            : ((CONST) el).value - ((CONST) er).value)), addTo);
+                }
+                // an offset has to fit in 13 bits like any other constant, anything bigger gets set into a register
+                // and added instead. that means taking one away is adding its negation
+                if (oper == BINOP.MINUS && er instanceof CONST && !isImmediate(er)) {
+                    er = new CONST(-((CONST) er).value);
+                    opRep = binOpToSymbol(BINOP.PLUS);
+                }
+                if (isImmediate(el)) {
+                    if (er instanceof MEM) {
+                        tr = generateTemp("mem");
+                        munchMem((MEM) er, addTo);
+                        loadMem(tr, addTo);
+
+                        setMem(String.format("[%d %s `m0]", ((CONST) el).value, opRep),
+                                String.format("[%d %s %s]", ((CONST) el).value, opRep, tr.toString()), tr);
                     } else {
                         tr = munchExp(er, addTo);
-                        memStr = String.format("[%d %s %s]", ((CONST) el).value, opRep, tempMap.get(tr));
-                        memComment = String.format("[%d %s %s]", ((CONST) el).value, opRep, tr.toString());
+                        setMem(String.format("[%d %s `m0]", ((CONST) el).value, opRep),
+                                String.format("[%d %s %s]", ((CONST) el).value, opRep, tr.toString()), tr);
                     }
                 } else if (el instanceof MEM){
                     // first thing we have to do is load our mem on the left into a register/temp
-                    munchMem((MEM)el, addTo);
                     tl = generateTemp();
-                    addTo.add(new MoveInstruction(
-                            String.format("\tld\t%s, `d0", memStr),
-                            String.format("%s := MEM%s", tl.toString(), memComment),
-                            tl, null
-                    ));
+                    munchMem((MEM)el, addTo);
+                    loadMem(tl, addTo);
 
-                    if (er instanceof CONST) {
-                        memStr = String.format("[%s %s %d]", tempMap.get(tl), opRep, ((CONST) er).value);
-                        memComment = String.format("[%s %s %d]", tl.toString(), opRep, ((CONST) er).value);
+                    if (isImmediate(er)) {
+                        setMem(String.format("[`m0 %s %d]", opRep, ((CONST) er).value),
+                                String.format("[%s %s %d]", tl.toString(), opRep, ((CONST) er).value), tl);
 
                     } else if (er instanceof MEM) {
-                        tr = munchMem((MEM)er, addTo);
-                        addTo.add(new MoveInstruction(
-                                String.format("\tld\t%s, `d0", memStr),
-                                String.format("%s = MEM%s", tr.toString(), memComment),
-                                tr, null));
-
-                        memStr = String.format("[%s %s %s]", tempMap.get(tl), opRep, tempMap.get(tr));
-                        memComment = String.format("[%s %s %s]", tl.toString(), opRep, tr.toString());
+                        tr = generateTemp("mem");
+                        munchMem((MEM)er, addTo);
+                        loadMem(tr, addTo);
+
+                        setMem(String.format("[`m0 %s `m1]", opRep),
+                                String.format("[%s %s %s]", tl.toString(), opRep, tr.toString()), tl, tr);
                     } else {
                         tr = munchExp(er, addTo);
-                        memStr = String.format("[%s %s %s]", tempMap.get(tl), opRep, tempMap.get(tr));
-                        memComment = String.format("[%s %s %s]", tl.toString(), opRep, tr.toString());
+                        setMem(String.format("[`m0 %s `m1]", opRep),
+                                String.format("[%s %s %s]", tl.toString(), opRep, tr.toString()), tl, tr);
                     }
-                // el is not const, temp, or mem
+                // el is not a const that fits, or mem
                 } else {
-                    tl = munchExp(b.left, addTo);
-                    if (er instanceof CONST) {
-                        memStr = String.format("[%s %s %d]", tempMap.get(tl), opRep, ((CONST) er).value);
-                        memComment = String.format("[%s %s %d]", tl.toString(), opRep, ((CONST)er).value);
+                    tl = munchExp(el, addTo);
+                    if (isImmediate(er)) {
+                        setMem(String.format("[`m0 %s %d]", opRep, ((CONST) er).value),
+                                String.format("[%s %s %d]", tl.toString(), opRep, ((CONST)er).value), tl);
 
                     } else if (er instanceof MEM) {
-                        tr = munchMem((MEM)er, addTo);
-                        addTo.add(new MoveInstruction(
-                                String.format("\tld\t%s, `d0", memStr),
-                                String.format("%s = MEM%s", tr.toString(), memComment),
-                                tr, null));
-
-                        memStr = String.format("[%s %s %s]", tempMap.get(tl), opRep, tempMap.get(tr));
-                        memComment = String.format("[%s %s %s]", tl.toString(), opRep, tr.toString());
+                        tr = generateTemp("mem");
+                        munchMem((MEM)er, addTo);
+                        loadMem(tr, addTo);
+
+                        setMem(String.format("[`m0 %s `m1]", opRep),
+                                String.format("[%s %s %s]", tl.toString(), opRep, tr.toString()), tl, tr);
                     } else {
                         tr = munchExp(er, addTo);
-                        memStr = String.format("[%s %s %s]", tempMap.get(tl), opRep, tempMap.get(tr));
-                        memComment = String.format("[%s %s %s]", tl.toString(), opRep, tr.toString());
+                        setMem(String.format("[`m0 %s `m1]", opRep),
+                                String.format("[%s %s %s]", tl.toString(), opRep, tr.toString()), tl, tr);
                     }
                 }
             // not + or - operator, so just disregard that it's a BINOP basically
             } else {
                 tl = munchExp(m.exp, addTo);
-                memStr = String.format("[%s]", tempMap.get(tl));
-                memComment = String.format("[%s]", tl.toString());
+                setMem("[`m0]", String.format("[%s]", tl.toString()), tl);
             }
         } else if (m.exp instanceof MEM) {
             tl = generateTemp("mem");
             munchMem((MEM)m.exp, addTo);
-            addTo.add(new MoveInstruction(
-                    String.format("\tld\t%s, `d0", memStr),
-                    String.format("%s := MEM%s", tl.toString(), memComment),
-                    tl, null));
-            memStr = String.format("[%s]", tempMap.get(tl));
-            memComment = String.format("[%s]", tl.toString());
-        } else if (m.exp instanceof CONST){
-            memStr = String.format("[%d]", ((CONST)m.exp).value);
-            memComment = memStr;
+            loadMem(tl, addTo);
+            setMem("[`m0]", String.format("[%s]", tl.toString()), tl);
+        } else if (isImmediate(m.exp)){
+            setMem(String.format("[%d]", ((CONST)m.exp).value), String.format("[%d]", ((CONST)m.exp).value));
+        } else if (m.exp instanceof NAME){
+            // a global of the runtime, its address takes a sethi for the top 22 bits and the rest goes in the offset
+            tl = generateTemp("hi");
+            emit(addTo, String.format("\tsethi\t%%hi(%s), `d0", ((NAME)m.exp).label),
+                    String.format("%s := %%hi(%s)", tl, ((NAME)m.exp).label), tl);
+            setMem(String.format("[`m0 + %%lo(%s)]", ((NAME)m.exp).label),
+                    String.format("[%s + %%lo(%s)]", tl, ((NAME)m.exp).label), tl);
         } else {
-            // expression  is not BINOP, TEMP, CONST, or MEM
+            // expression  is not BINOP, MEM, NAME or a CONST that fits
             tl = munchExp(m.exp, addTo);
-            memStr = String.format("[%s]", tempMap.get(tl));
-            memComment = String.format("[%s]", tl.toString());
+            setMem("[`m0]", String.format("[%s]", tl.toString()), tl);
         }
         return null;
     }
 
-    // call and jump already should handle these, and they aren't tied to a temp
+    private void setMem(String str, String comment, NameOfTemp... temps){
+        memStr = str;
+        memComment = comment;
+        memTemps = new ArrayList(Arrays.asList(temps));
+    }
+
+    // when we want the value of a mem rather than its address, load it into a temp
+    private NameOfTemp munchMemValue(MEM m, List<Instruction> addTo){
+        NameOfTemp t = generateTemp("mem");
+        munchMem(m, addTo);
+        loadMem(t, addTo);
+        return t;
+    }
+
+    // call and jump already handle their own names, anywhere else we want the address the name stands for
     private NameOfTemp munchName(NAME n, List<Instruction> addTo){
-        return null;
+        NameOfTemp t = generateTemp("name");
+        emit(addTo, String.format("\tset\t%s, `d0", n.label), String.format("%s := %s", t, n.label), t);
+        return t;
     }
 
-    // on temp, return where it is
+    // on temp, return the temp, the register allocator figures out where it goes
     private NameOfTemp munchTemp(TEMP t, List<Instruction> addTo) {
-        if (!tempMap.containsKey(t.temp)){
-            putTemp(t.temp);
-        }
-
         return t.temp;
     }
 
@@ -0,0 +1,81 @@
+package global;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+// one declaration of a method, its args and locals
+// overloads of the same name are told apart by the number they get in the class that declares them, which is
+// also how their label is told apart
+public class MethodSymbol extends Symbol {
+
+    public final ClassSymbol owner;     // the class that declares it
+    public final String type;           // what it returns
+    public String number;               // 001, 002, ... in the order the class declares them
+    public VarSymbol[] args = new VarSymbol[0];     // in the order they are passed, %i1 on
+    public VarSymbol[] locals = new VarSymbol[0];   // in the order they are declared
+    private HashMap<String, VarSymbol> vars = new HashMap();
+
+    public MethodSymbol(int id, String name, ClassSymbol owner, String type){
+        super(id, name);
+        this.owner = owner;
+        this.type = type;
+    }
+
+    // false if we already have something by that name
+    public boolean declare(VarSymbol v){
+        if (vars.putIfAbsent(v.name, v) != null){
+            return false;
+        }
+        if (v.kind == VarSymbol.ARG){
+            args = Arrays.copyOf(args, args.length + 1);
+            args[args.length - 1] = v;
+            v.place(args.length);
+        } else {
+            locals = Arrays.copyOf(locals, locals.length + 1);
+            locals[locals.length - 1] = v;
+            v.place(locals.length);
+        }
+        return true;
+    }
+
+    // an arg or local
+    public VarSymbol lookup(String name){
+        return vars.get(name);
+    }
+
+    // the ids of the types it takes, in order
+    public int[] argTypes(SymbolTable table){
+        int[] types = new int[args.length];
+        for (int i = 0; i < args.length; i++){
+            types[i] = table.typeId(args[i].type);
+        }
+        return types;
+    }
+
+    // does it take the same args as other, so one hides the other?
+    public boolean sameArgs(MethodSymbol other){
+        if (other.args.length != args.length){
+            return false;
+        }
+        for (int i = 0; i < args.length; i++){
+            if (!args[i].type.equals(other.args[i].type)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // what it takes, like (int, boolean)
+    public String signature(){
+        StringBuilder s = new StringBuilder("(");
+        for (int i = 0; i < args.length; i++){
+            s.append(i == 0 ? "" : ", ").append(args[i].type);
+        }
+        return s.append(")").toString();
+    }
+
+    // Class$method$number
+    public String label(){
+        return String.format("%s$%s$%s", owner.name, name, number);
+    }
+}
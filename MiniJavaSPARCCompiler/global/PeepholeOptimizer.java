@@ -0,0 +1,210 @@
+package global;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+
+import assem.*;
+import tree.*;
+
+// peephole optimizations over the selected instructions of a method, once registers have been handed out
+// every rule has a name in the table below, and gets a look at the code at every index. if it matches, it changes
+// the code right there and we count a hit for it. we keep going over the method until nothing matches any more
+public class PeepholeOptimizer {
+
+    // a rule changes the code at index i and says so, or leaves it alone and returns false
+    public interface Rule {
+        boolean apply(PeepholeOptimizer p, List<Instruction> code, int i);
+    }
+
+    private LinkedHashMap<String, Rule> rules = new LinkedHashMap();
+    public LinkedHashMap<String, Integer> hits = new LinkedHashMap();   // how many times each rule matched
+    private HashMap<NameOfTemp, String> tempMap;
+
+    public PeepholeOptimizer(HashMap<NameOfTemp, String> tempMap){
+        this.tempMap = tempMap;
+        addRule("mov-self", PeepholeOptimizer::movSelf);
+        addRule("branch-next", PeepholeOptimizer::branchNext);
+        addRule("store-load", PeepholeOptimizer::storeLoad);
+        addRule("set-known", PeepholeOptimizer::setKnown);
+    }
+
+    public void addRule(String name, Rule rule){
+        rules.put(name, rule);
+        hits.put(name, 0);
+    }
+
+    public void removeRule(String name){
+        rules.remove(name);
+        hits.remove(name);
+    }
+
+    public List<Instruction> optimize(List<Instruction> instructions){
+        ArrayList<Instruction> code = new ArrayList(instructions);
+        boolean changed = true;
+
+        while (changed){
+            changed = false;
+            for (int i = 0; i < code.size(); i++){
+                for (String name: rules.keySet()){
+                    if (rules.get(name).apply(this, code, i)){
+                        hits.put(name, hits.get(name) + 1);
+                        changed = true;
+                    }
+                    if (i >= code.size()){
+                        break;
+                    }
+                }
+            }
+        }
+        return code;
+    }
+
+    // the instruction as it is going to come out, without its comment
+    public String text(Instruction i){
+        String s = i.format(tempMap);
+        if (s.contains("!")){
+            s = s.substring(0, s.indexOf("!"));
+        }
+        return s.trim();
+    }
+
+    public String opcode(Instruction i){
+        return FlowGraph.opcode(i, tempMap);
+    }
+
+    // what comes after the opcode, split up on commas
+    public String[] operands(Instruction i){
+        String[] parts = text(i).split("\\s+", 2);
+        if (parts.length < 2){
+            return new String[0];
+        }
+        String[] ops = parts[1].split(",");
+        for (int o = 0; o < ops.length; o++){
+            ops[o] = ops[o].trim();
+        }
+        return ops;
+    }
+
+    // the register an instruction writes to, if it writes one
+    public String destination(Instruction i){
+        String op = opcode(i);
+        String[] ops = operands(i);
+        if (op.isEmpty() || op.startsWith(".") || op.startsWith("st") || op.equals("cmp") || op.equals("tst")
+                || op.equals("nop") || DelaySlotFiller.isDelayed(op) || ops.length == 0
+                || !ops[ops.length - 1].startsWith("%")){
+            return null;
+        }
+        return ops[ops.length - 1];
+    }
+
+    private static boolean isReal(Instruction i){
+        return !(i instanceof Comment);
+    }
+
+    // the next instruction from i that isn't a comment
+    private static int next(List<Instruction> code, int i){
+        i++;
+        while (i < code.size() && !isReal(code.get(i))){
+            i++;
+        }
+        return i;
+    }
+
+    // mov %l0, %l0 doesn't do anything, and coalescing leaves plenty of these behind
+    private static boolean movSelf(PeepholeOptimizer p, List<Instruction> code, int i){
+        String[] ops;
+        if (!p.opcode(code.get(i)).equals("mov")){
+            return false;
+        }
+        ops = p.operands(code.get(i));
+        if (ops.length == 2 && ops[0].equals(ops[1])){
+            code.remove(i);
+            return true;
+        }
+        return false;
+    }
+
+    // ba L, nop, L: just falls through to L anyway
+    private static boolean branchNext(PeepholeOptimizer p, List<Instruction> code, int i){
+        Instruction b = code.get(i);
+        int slot, l;
+        if (!FlowGraph.isUnconditional(p.opcode(b)) || p.opcode(b).contains(",") || b.jumps() == null
+                || b.jumps().size() != 1){
+            return false;
+        }
+        slot = next(code, i);
+        if (slot >= code.size() || !p.opcode(code.get(slot)).equals("nop")){
+            return false;
+        }
+        for (l = slot + 1; l < code.size() && !(code.get(l) instanceof OperationInstruction
+                || code.get(l) instanceof MoveInstruction); l++){
+            if (code.get(l) instanceof LabelInstruction
+                    && ((LabelInstruction)code.get(l)).label.toString().equals(b.jumps().get(0).toString())){
+                code.remove(slot);
+                code.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // st %l0, [x] then ld [x], %l1 is st %l0, [x] then mov %l0, %l1, which doesn't have to wait on memory
+    private static boolean storeLoad(PeepholeOptimizer p, List<Instruction> code, int i){
+        String[] st, ld;
+        int l;
+        if (!p.opcode(code.get(i)).equals("st")){
+            return false;
+        }
+        l = next(code, i);
+        if (l >= code.size() || !p.opcode(code.get(l)).equals("ld")){
+            return false;
+        }
+        st = p.operands(code.get(i));
+        ld = p.operands(code.get(l));
+        if (st.length != 2 || ld.length != 2 || !st[1].equals(ld[0])){
+            return false;
+        }
+        if (st[0].equals(ld[1])){
+            code.remove(l);
+        } else {
+            code.set(l, new OperationInstruction(String.format("\tmov\t%s, %s", st[0], ld[1]),
+                    String.format("%s := %s (was reloaded from %s)", ld[1], st[0], ld[0])));
+        }
+        return true;
+    }
+
+    // set of a constant a register already has, with nothing changing that register in between
+    private static boolean setKnown(PeepholeOptimizer p, List<Instruction> code, int i){
+        String[] ops;
+        String reg, op;
+        Instruction prev;
+        if (!p.opcode(code.get(i)).equals("set")){
+            return false;
+        }
+        ops = p.operands(code.get(i));
+        if (ops.length != 2){
+            return false;
+        }
+        reg = ops[1];
+
+        // walk back to the start of the block
+        for (int b = i - 1; b >= 0; b--){
+            prev = code.get(b);
+            op = p.opcode(prev);
+            if (prev instanceof LabelInstruction || DelaySlotFiller.isDelayed(op)
+                    || op.equals("save") || op.equals("restore")){
+                return false;
+            }
+            if (reg.equals(p.destination(prev))){
+                if (op.equals("set") && p.operands(prev)[0].equals(ops[0])){
+                    code.remove(i);
+                    return true;
+                }
+                return false;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,71 @@
+package global;
+
+import java.util.List;
+import java.util.ArrayList;
+
+import tree.*;
+
+// prints by appending to the runtime's output queue inline, instead of calling print_int every time
+// the runtime keeps the numbers waiting to be printed in a queue, and only turns them into text (and writes that
+// out) once the queue fills up, or the program ends. print_ptr is the next free word of it and print_limit is the
+// word just past the end, so as long as there's room, printing is a store and bumping print_ptr. when there isn't,
+// print_int empties the queue first
+public class PrintInliner {
+
+    public int inlined = 0;     // how many prints don't need a call any more (unless the queue is full)
+    private int c = 0;
+
+    public List<Stm> lower(List<Stm> statements){
+        ArrayList<Stm> out = new ArrayList();
+        CALL call;
+        for (Stm s: statements){
+            call = s instanceof EVAL && ((EVAL)s).exp instanceof CALL ? (CALL)((EVAL)s).exp : null;
+            if (call != null && call.func instanceof NAME && ((NAME)call.func).label.toString().equals("print_int")
+                    && call.args != null && call.args.toList().size() == 1){
+                out.addAll(append(call.args.toList().get(0)));
+            } else {
+                out.add(s);
+            }
+        }
+        return out;
+    }
+
+    private TEMP fresh(){
+        return new TEMP(new NameOfTemp(String.format("print%03d", ++c)));
+    }
+
+    //      p := print_ptr
+    //      if p >=u print_limit goto slow
+    //      MEM[p] := n
+    //      print_ptr := p + 4
+    //      goto done
+    //  slow:
+    //      print_int(n)
+    //  done:
+    private List<Stm> append(Exp n){
+        ArrayList<Stm> out = new ArrayList();
+        Exp ptr = new MEM(new NAME(new NameOfLabel("print_ptr")));
+        Exp limit = new MEM(new NAME(new NameOfLabel("print_limit")));
+        TEMP p = fresh();
+        LABEL slow = LABEL.generateLABEL("printSlow"), fast = LABEL.generateLABEL("printFast"),
+                done = LABEL.generateLABEL("printDone");
+
+        // what we print gets used on both paths, so it's only worked out once
+        if (!(n instanceof TEMP || n instanceof CONST)){
+            TEMP t = fresh();
+            out.add(new MOVE(t, n));
+            n = t;
+        }
+        out.add(new MOVE(p, ptr));
+        out.add(new CJUMP(CJUMP.UGE, p, limit, slow.label, fast.label));
+        out.add(fast);
+        out.add(new MOVE(new MEM(p), n));
+        out.add(new MOVE(ptr, new BINOP(BINOP.PLUS, p, new CONST(4))));
+        out.add(new JUMP(done.label));
+        out.add(slow);
+        out.add(new EVAL(new CALL(new NameOfLabel("print_int"), n)));
+        out.add(done);
+        inlined++;
+        return out;
+    }
+}
@@ -0,0 +1,53 @@
+package global;
+
+import java.util.List;
+import java.util.HashMap;
+
+import assem.*;
+import tree.*;
+
+// hands out registers to the temps of a method once instruction selection is done
+public abstract class RegisterAllocator {
+
+    // the registers we can hand out, in the order we like to hand them out
+    // locals first since calls can't touch them, then the outgoing registers, then the globals
+    // the incoming registers hold our args and return value, so they are never handed out
+    // %g5-%g7 belong to the system (libc keeps its thread pointer in %g7), so we leave those alone too
+    public static final String[] REGISTERS = {
+            "%l0", "%l1", "%l2", "%l3", "%l4", "%l5", "%l6", "%l7",
+            "%o0", "%o1", "%o2", "%o3", "%o4", "%o5",
+            "%g1", "%g2", "%g3", "%g4"
+    };
+    // how many of REGISTERS are locals (and so survive calls)
+    public static final int NUM_LOCALS = 8;
+
+    // registers we aren't allowed to hand out in this method
+    // leaf methods run in their caller's register window, so the caller's locals are off limits
+    protected boolean[] reserved = new boolean[REGISTERS.length];
+
+    public abstract String getName();
+
+    public void reserve(String register){
+        for (int r = 0; r < REGISTERS.length; r++){
+            if (REGISTERS[r].equals(register)){
+                reserved[r] = true;
+            }
+        }
+    }
+
+    // how many registers we can actually hand out
+    protected int available(){
+        int k = 0;
+        for (boolean r: reserved){
+            if (!r){
+                k++;
+            }
+        }
+        return k;
+    }
+
+    // puts the register of every temp in instructions into tempMap
+    // returns the temps that need to be spilled, in which case tempMap is left alone and we should be run again
+    // once the spill code is in place
+    public abstract List<NameOfTemp> allocate(List<Instruction> instructions, HashMap<NameOfTemp, String> tempMap);
+}
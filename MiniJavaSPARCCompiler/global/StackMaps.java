@@ -0,0 +1,109 @@
+package global;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.BitSet;
+
+import assem.*;
+import tree.*;
+
+// tells the collector in the runtime where every pointer it has to follow is
+// the only place a collection can start is a call, so every call gets a label and an entry in gc_maps: the
+// registers of the window making the call that hold something on the heap once it returns, and the slots of its
+// frame that can. a register only counts if the temp in it is live past the call, the slots (locals and spills
+// that could hold pointers) always count, and get cleared when the frame is made so they never hold garbage
+// each class also gets a layout, which is its number of fields and a bitmap of the ones that can hold pointers.
+// the header of every object points at the layout of its class
+public class StackMaps {
+
+    public int sites = 0;       // how many calls the collector can find its way back through
+    private int c = 0;
+    private ArrayList<String> entries = new ArrayList();    // the .word lines of gc_maps, in the order of the code
+    private ArrayList<String> slotLists = new ArrayList();  // the frame slots of each method
+
+    // labels every call in code, and works out what it has to say about each
+    // slots are offsets from %fp, of the frame slots that can hold pointers
+    public List<Instruction> mark(List<Instruction> code, HashMap<NameOfTemp, String> tempMap, AliasAnalysis types,
+            String method, List<Integer> slots){
+        ArrayList<Instruction> out = new ArrayList();
+        FlowGraph flow = new FlowGraph(code, tempMap);
+        NameOfLabel slotLabel = new NameOfLabel(method, "slots"), site;
+        StringBuilder list = new StringBuilder();
+        int slot;
+
+        list.append(String.format("%s:\n\t.word\t%d", slotLabel, slots.size()));
+        for (int s: slots){
+            list.append(String.format(", %d", s));
+        }
+        slotLists.add(list.toString());
+
+        for (int i = 0; i < code.size(); i++){
+            slot = i + 1;
+            // a tail call gives our window back in its delay slot, and never returns here
+            if (FlowGraph.isCall(FlowGraph.opcode(code.get(i), tempMap)) && slot < code.size()
+                    && !FlowGraph.opcode(code.get(slot), tempMap).equals("restore")){
+                site = new NameOfLabel(method, String.format("gc%03d", ++c));
+                out.add(new LabelInstruction(site));
+                entries.add(String.format("\t.word\t%s, 0x%04x, %s", site,
+                        registers(flow, flow.liveOut[slot], tempMap, types), slotLabel));
+                sites++;
+            }
+            out.add(code.get(i));
+        }
+        return out;
+    }
+
+    // the bits of %l0-%l7 then %i0-%i7, in the order the window gets saved to the stack
+    private static int registers(FlowGraph flow, BitSet live, HashMap<NameOfTemp, String> tempMap,
+            AliasAnalysis types){
+        NameOfTemp t;
+        String reg;
+        int mask = 0;
+        for (int l = live.nextSetBit(0); l >= 0; l = live.nextSetBit(l + 1)){
+            t = flow.temps.get(l);
+            reg = tempMap.get(t);
+            if (reg != null && reg.matches("%[li][0-7]") && types.mayPoint(t)){
+                mask |= 1 << ((reg.charAt(1) == 'l' ? 0 : 8) + reg.charAt(2) - '0');
+            }
+        }
+        return mask;
+    }
+
+    // the layouts of every class, then the slots of every method, then the table of every call
+    // the calls are in the same order as the code, so the runtime can binary search for a return address
+    public List<String> emit(SymbolTable table){
+        ArrayList<String> lines = new ArrayList();
+        lines.add("\t.section\t\".rodata\"");
+        lines.add("\t.align\t4");
+        for (ClassSymbol c: table.classes()){
+            lines.add(layout(table, c));
+        }
+        lines.addAll(slotLists);
+        lines.add("\t.global\tgc_maps");
+        lines.add("gc_maps:");
+        lines.add(String.format("\t.word\t%d", sites));
+        lines.addAll(entries);
+        return lines;
+    }
+
+    // fields of the classes we inherit from are sitting in our words too
+    private static String layout(SymbolTable table, ClassSymbol cls){
+        int words = cls.numFields;
+        int[] bits = new int[Math.max(1, (words + 31) / 32)];
+        StringBuilder line = new StringBuilder(String.format("%s:\n\t.word\t%d", new NameOfLabel(cls.name, "layout"),
+                words));
+
+        for (ClassSymbol c = cls; c != null; c = c.superclass){
+            for (VarSymbol v: c.fields){
+                if ("int[]".equals(v.type) || table.isClass(v.type)){
+                    bits[v.slot / 32] |= 1 << (v.slot % 32);
+                }
+            }
+        }
+        for (int b: bits){
+            line.append(String.format(", 0x%08x", b));
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,140 @@
+package global;
+
+import java.util.ArrayList;
+
+import tree.*;
+
+// strength reduction over the IR, run after constant folding so all the constants we can see are already there
+// smul takes several cycles where shifts and adds take one, so multiplying by a constant becomes shifts and adds
+// array addresses are also regrouped so that the constant part ends up as the displacement of the load or store
+public class StrengthReducer {
+
+    public int reduced = 0;     // how many multiplies we got rid of
+    private int c = 0;
+
+    public Stm reduce(Stm s){
+        if (s instanceof SEQ){
+            return new SEQ(reduce(((SEQ)s).left), reduce(((SEQ)s).right));
+        } else if (s instanceof MOVE){
+            // the destination of a move can't be replaced by anything, only the address inside of a mem can
+            if (((MOVE)s).dst instanceof MEM){
+                return new MOVE(reduce(((MOVE)s).dst), reduce(((MOVE)s).src));
+            }
+            return new MOVE(((MOVE)s).dst, reduce(((MOVE)s).src));
+        } else if (s instanceof EVAL){
+            return new EVAL(reduce(((EVAL)s).exp));
+        } else if (s instanceof CJUMP){
+            CJUMP cj = (CJUMP)s;
+            return new CJUMP(cj.relop, reduce(cj.left), reduce(cj.right), cj.iftrue, cj.iffalse);
+        } else if (s instanceof JUMP || s instanceof LABEL){
+            return s;
+        } else {
+            throw new UnsupportedOperationException(
+                    String.format("Found unexpected Statement Type: %s", s.getClass()));
+        }
+    }
+
+    public Exp reduce(Exp e){
+        if (e instanceof BINOP){
+            BINOP b = (BINOP)e;
+            return reduceBinOp(b.binop, reduce(b.left), reduce(b.right));
+        } else if (e instanceof MEM){
+            return new MEM(reassociate(reduce(((MEM)e).exp)));
+        } else if (e instanceof CALL){
+            ArrayList<Exp> args = new ArrayList();
+            if (((CALL)e).args != null){
+                for (Exp arg: ((CALL)e).args.toList()){
+                    args.add(reduce(arg));
+                }
+            }
+            return new CALL(((CALL)e).func, args);
+        } else if (e instanceof RET){
+            return new RET(reduce(((RET)e).stm), reduce(((RET)e).exp));
+        } else if (e instanceof CONST || e instanceof TEMP || e instanceof NAME){
+            return e;
+        } else {
+            throw new UnsupportedOperationException(
+                    String.format("Found unexpected Expression Type: %s", e.getClass()));
+        }
+    }
+
+    private Exp reduceBinOp(int op, Exp l, Exp r){
+        int v;
+        if (op != BINOP.MUL || !(r instanceof CONST)){
+            return new BINOP(op, l, r);
+        }
+        v = ((CONST)r).value;
+
+        // (x + a) * b is x * b + a * b, which is how array indices come in: (i + 1) * 4
+        if (l instanceof BINOP && ((BINOP)l).binop == BINOP.PLUS && ((BINOP)l).right instanceof CONST){
+            return new BINOP(BINOP.PLUS, reduceBinOp(BINOP.MUL, ((BINOP)l).left, r),
+                    new CONST(((CONST)((BINOP)l).right).value * v));
+        }
+
+        // x * 2^k is x << k
+        if (v > 0 && Integer.bitCount(v) == 1){
+            reduced++;
+            return new BINOP(BINOP.LSHIFT, l, new CONST(Integer.numberOfTrailingZeros(v)));
+        }
+
+        // two bits set, x * (2^a + 2^b) is (x << a) + (x << b)
+        // all ones, x * (2^k - 1) is (x << k) - x
+        // anything else isn't worth more than one extra instruction, so it stays a smul
+        if (v > 0 && (Integer.bitCount(v) == 2 || Integer.bitCount(v + 1) == 1)){
+            reduced++;
+            // x gets used twice, so it has to be worked out once into its own temp
+            TEMP x = new TEMP(new NameOfTemp(String.format("mul%03d", ++c)));
+            Exp sum;
+            if (Integer.bitCount(v) == 2){
+                sum = new BINOP(BINOP.PLUS, shift(x, 31 - Integer.numberOfLeadingZeros(v)),
+                        shift(x, Integer.numberOfTrailingZeros(v)));
+            } else {
+                sum = new BINOP(BINOP.MINUS, shift(x, Integer.numberOfTrailingZeros(v + 1)), x);
+            }
+            if (l instanceof TEMP){
+                return substitute(sum, x, (TEMP)l);
+            }
+            return new RET(new MOVE(x, l), sum);
+        }
+
+        return new BINOP(op, l, r);
+    }
+
+    private static Exp shift(TEMP x, int k){
+        return k == 0 ? x : new BINOP(BINOP.LSHIFT, x, new CONST(k));
+    }
+
+    // the shift and add pattern, with the temp it works on swapped out for one we already have
+    private static Exp substitute(Exp e, TEMP from, TEMP to){
+        if (e instanceof TEMP && ((TEMP)e).temp.equals(from.temp)){
+            return to;
+        } else if (e instanceof BINOP){
+            return new BINOP(((BINOP)e).binop, substitute(((BINOP)e).left, from, to),
+                    substitute(((BINOP)e).right, from, to));
+        }
+        return e;
+    }
+
+    // a + (b + c) is (a + b) + c, so we can use [a+b + c] instead of working out b + c first
+    // loads and stores can take either two registers or a register and a constant, but not both
+    // the constant only goes on top if it fits in the 13 bits of a displacement, otherwise it would need a register
+    // of its own anyway
+    private static Exp reassociate(Exp addr){
+        BINOP b, inner;
+        if (!(addr instanceof BINOP) || ((BINOP)addr).binop != BINOP.PLUS){
+            return addr;
+        }
+        b = (BINOP)addr;
+        if (b.right instanceof BINOP && ((BINOP)b.right).binop == BINOP.PLUS
+                && MaximalMunch.isImmediate(((BINOP)b.right).right)){
+            inner = (BINOP)b.right;
+            return new BINOP(BINOP.PLUS, new BINOP(BINOP.PLUS, b.left, inner.left), inner.right);
+        }
+        if (b.left instanceof BINOP && ((BINOP)b.left).binop == BINOP.PLUS
+                && MaximalMunch.isImmediate(((BINOP)b.left).right)){
+            inner = (BINOP)b.left;
+            return new BINOP(BINOP.PLUS, new BINOP(BINOP.PLUS, inner.left, b.right), inner.right);
+        }
+        return addr;
+    }
+}
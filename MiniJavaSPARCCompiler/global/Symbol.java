@@ -0,0 +1,16 @@
+package global;
+
+// something a name in the program can stand for: a class, a method, or a variable
+// the table hands out ids counting up from 0 for each kind, so anything keyed by a symbol can be an array instead
+public abstract class Symbol {
+
+    public final int id;
+    public final String name;
+
+    protected Symbol(int id, String name){
+        this.id = id;
+        this.name = name;
+    }
+
+    public String toString(){ return name; }
+}
@@ -0,0 +1,112 @@
+package global;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import syntax.*;
+
+// every class in the program, and every method and variable in them, each with an id of its own
+// LookupCreator fills it in, and everything after that looks things up here
+public class SymbolTable {
+
+    // every type gets an id: the primitives, then every class at CLASSES plus its own id
+    public static final int UNKNOWN = -1, INT = 0, BOOLEAN = 1, INT_ARRAY = 2, VOID = 3, CLASSES = 4;
+
+    private ArrayList<ClassSymbol> classes = new ArrayList();
+    private ArrayList<MethodSymbol> methods = new ArrayList();
+    private ArrayList<VarSymbol> vars = new ArrayList();
+    private HashMap<String, ClassSymbol> classNames = new HashMap();
+
+    // null if there already is a class by that name
+    public ClassSymbol newClass(String name, String superName){
+        ClassSymbol c = new ClassSymbol(classes.size(), name, superName);
+        if (classNames.putIfAbsent(name, c) != null){
+            return null;
+        }
+        classes.add(c);
+        return c;
+    }
+
+    public MethodSymbol newMethod(String name, ClassSymbol owner, String type){
+        MethodSymbol m = new MethodSymbol(methods.size(), name, owner, type);
+        methods.add(m);
+        return m;
+    }
+
+    public VarSymbol newVar(String name, String type, int kind){
+        VarSymbol v = new VarSymbol(vars.size(), name, type, kind);
+        vars.add(v);
+        return v;
+    }
+
+    public List<ClassSymbol> classes(){ return classes; }
+    public ClassSymbol classSymbol(int id){ return classes.get(id); }
+    public MethodSymbol methodSymbol(int id){ return methods.get(id); }
+    public VarSymbol varSymbol(int id){ return vars.get(id); }
+    public int numMethods(){ return methods.size(); }
+    public int numVars(){ return vars.size(); }
+
+    public ClassSymbol lookup(String name){
+        return name == null ? null : classNames.get(name);
+    }
+
+    public boolean isClass(String type){
+        return lookup(type) != null;
+    }
+
+    public int typeId(String type){
+        ClassSymbol c;
+        switch (type) {
+            case "int":
+                return INT;
+            case "boolean":
+                return BOOLEAN;
+            case "int[]":
+                return INT_ARRAY;
+            case "void":
+                return VOID;
+            default:
+                c = lookup(type);
+                return c == null ? UNKNOWN : CLASSES + c.id;
+        }
+    }
+
+    // the same, without having to spell out the type first
+    public int typeId(Type type){
+        if (type instanceof IdentifierType){
+            return typeId(((IdentifierType)type).nameOfType);
+        } else if (type instanceof IntegerType){
+            return INT;
+        } else if (type instanceof BooleanType){
+            return BOOLEAN;
+        } else if (type instanceof IntArrayType){
+            return INT_ARRAY;
+        } else if (type instanceof VoidType){
+            return VOID;
+        }
+        return UNKNOWN;
+    }
+
+    // builds the signature index of every class, once they've inherited everything
+    public void index(){
+        for (ClassSymbol c: classes){
+            c.index(this);
+        }
+    }
+
+    // the method declaration a label (or the start of one) like Class$method$001 is for
+    public MethodSymbol method(String label){
+        String[] parts = label.split("\\$");
+        ClassSymbol c = parts.length < 3 ? null : lookup(parts[0]);
+        if (c == null){
+            return null;
+        }
+        for (MethodSymbol m: c.overloads(parts[1])){
+            if (m.owner == c && m.number.equals(parts[2])){
+                return m;
+            }
+        }
+        return null;
+    }
+}
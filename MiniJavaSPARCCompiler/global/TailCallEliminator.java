@@ -0,0 +1,103 @@
+package global;
+
+import java.util.List;
+import java.util.ArrayList;
+
+import tree.*;
+
+// turns calls in tail position into jumps, so recursion doesn't need a new register window for every level
+// a call is in tail position when its value goes straight into %i0 and the next thing we do is jump to the epilogue
+// a call back to the method we're in puts its args where ours were and jumps back up to the start of the body
+// a call to anything else puts its args in our %i registers and becomes a JUMP of the CALL with no targets, which
+// instruction selection turns into call with restore in its delay slot
+public class TailCallEliminator {
+
+    public int selfCalls = 0, tailCalls = 0;   // how many of each kind of call we turned into jumps
+    private int c = 0;
+
+    public List<Stm> eliminate(List<Stm> statements, String method){
+        ArrayList<Stm> out = new ArrayList();
+        String epilogue = method + "$epilogueBegin";
+        CALL call;
+        Stm s;
+        int skip;
+
+        for (int i = 0; i < statements.size(); i++){
+            s = statements.get(i);
+            call = null;
+            skip = 0;
+            if (isReturn(s, null) && ((MOVE)s).src instanceof CALL && jumpsTo(statements, i + 1, epilogue)){
+                call = (CALL)((MOVE)s).src;
+            } else if (s instanceof MOVE && ((MOVE)s).dst instanceof TEMP && ((MOVE)s).src instanceof CALL
+                    && i + 1 < statements.size() && isReturn(statements.get(i + 1), (TEMP)((MOVE)s).dst)
+                    && jumpsTo(statements, i + 2, epilogue)){
+                // linearizing can put the value of the call in a temp first
+                call = (CALL)((MOVE)s).src;
+                skip = 1;
+            }
+
+            // more than 6 args would need the stack, which we're about to give back
+            if (call != null && call.func instanceof NAME && call.args != null && call.args.toList().size() <= 6){
+                out.addAll(tailCall(call, method));
+                i += skip;
+            } else {
+                out.add(s);
+            }
+        }
+        return out;
+    }
+
+    // moving our value into %i0, optionally only from the temp t
+    private static boolean isReturn(Stm s, TEMP t){
+        return s instanceof MOVE && ((MOVE)s).dst instanceof TEMP
+                && ((TEMP)((MOVE)s).dst).temp.toString().equals("%i0")
+                && (t == null || (((MOVE)s).src instanceof TEMP && ((TEMP)((MOVE)s).src).temp.equals(t.temp)));
+    }
+
+    // is the next thing we do from i on (past any labels) a jump to label?
+    private static boolean jumpsTo(List<Stm> statements, int i, String label){
+        while (i < statements.size() && statements.get(i) instanceof LABEL){
+            i++;
+        }
+        return i < statements.size() && statements.get(i) instanceof JUMP
+                && ((JUMP)statements.get(i)).targets.size() == 1
+                && ((JUMP)statements.get(i)).targets.get(0).toString().equals(label);
+    }
+
+    private static boolean isIncoming(Exp e, int a){
+        return e instanceof TEMP && ((TEMP)e).temp.toString().equals(String.format("%%i%d", a));
+    }
+
+    private List<Stm> tailCall(CALL call, String method){
+        ArrayList<Stm> out = new ArrayList();
+        ArrayList<Exp> incoming = new ArrayList();
+        List<Exp> args = call.args.toList();
+        TEMP[] temps = new TEMP[args.size()];
+        TEMP in;
+
+        // the args can use our own args, so all of them have to be worked out before any of ours get replaced
+        // an arg that's already sitting where it's going (like this) can stay put
+        for (int a = 0; a < args.size(); a++){
+            if (!isIncoming(args.get(a), a)){
+                temps[a] = new TEMP(new NameOfTemp(String.format("tail%03d", ++c)));
+                out.add(new MOVE(temps[a], args.get(a)));
+            }
+        }
+        for (int a = 0; a < args.size(); a++){
+            in = new TEMP(String.format("%%i%d", a));
+            if (temps[a] != null){
+                out.add(new MOVE(in, temps[a]));
+            }
+            incoming.add(in);
+        }
+
+        if (((NAME)call.func).label.toString().equals(method)){
+            selfCalls++;
+            out.add(new JUMP(new NameOfLabel(method + "$prologueEnd")));
+        } else {
+            tailCalls++;
+            out.add(new JUMP(new CALL(call.func, incoming), new ArrayList()));
+        }
+        return out;
+    }
+}
@@ -0,0 +1,223 @@
+package global;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import tree.*;
+
+// splits the linearized statements of a method into basic blocks and lays them back out as traces
+// so that every CJUMP is followed by its false label and as many JUMPs as possible become fall throughs
+// (Appel chapter 8.2)
+public class TraceScheduler {
+
+    public int removedJumps = 0, removedBlocks = 0;
+    private boolean fallsOff;   // does the last block fall off the end of the statements?
+
+    // a basic block always starts with a LABEL and ends with a JUMP or CJUMP
+    private static class Block {
+        ArrayList<Stm> stms = new ArrayList();
+        Block follows;      // the block that came right after this one before we moved anything
+        boolean marked;
+
+        String label(){ return ((LABEL)stms.get(0)).label.toString(); }
+        Stm last(){ return stms.get(stms.size() - 1); }
+    }
+
+    public List<Stm> schedule(List<Stm> statements){
+        NameOfLabel done = NameOfLabel.generateLabel("traceEnd");
+        ArrayList<Block> blocks = basicBlocks(statements, done);
+        ArrayList<Stm> out = new ArrayList();
+
+        blocks = reachable(blocks);
+        for (Block b: traces(blocks)){
+            out.addAll(b.stms);
+        }
+        if (fallsOff){
+            out.add(new LABEL(done));
+        }
+        return fixJumps(out);
+    }
+
+    private static boolean endsBlock(Stm s){
+        return s instanceof JUMP || s instanceof CJUMP;
+    }
+
+    private ArrayList<Block> basicBlocks(List<Stm> statements, NameOfLabel done){
+        ArrayList<Block> blocks = new ArrayList();
+        Block current = null;
+
+        for (Stm s: statements){
+            if (current == null){
+                current = new Block();
+                if (!(s instanceof LABEL)){
+                    current.stms.add(new LABEL(NameOfLabel.generateLabel("block")));
+                }
+            } else if (s instanceof LABEL){
+                // falling into a label, make the jump to it explicit
+                current.stms.add(new JUMP(((LABEL)s).label));
+                blocks.add(current);
+                current = new Block();
+            }
+            current.stms.add(s);
+            if (endsBlock(s)){
+                blocks.add(current);
+                current = null;
+            }
+        }
+        if (current != null){
+            fallsOff = true;
+            current.stms.add(new JUMP(done));
+            blocks.add(current);
+        }
+
+        for (int b = 0; b + 1 < blocks.size(); b++){
+            blocks.get(b).follows = blocks.get(b + 1);
+        }
+        return blocks;
+    }
+
+    // anything we can't get to from the first block (like the other side of a folded CJUMP) can go
+    private ArrayList<Block> reachable(ArrayList<Block> blocks){
+        HashMap<String, Block> byLabel = new HashMap();
+        HashSet<Block> seen = new HashSet();
+        ArrayList<Block> work = new ArrayList(), ret = new ArrayList();
+        Block b, t;
+
+        if (blocks.isEmpty()){
+            return blocks;
+        }
+        for (Block bl: blocks){
+            byLabel.put(bl.label(), bl);
+        }
+        work.add(blocks.get(0));
+        seen.add(blocks.get(0));
+        while (!work.isEmpty()){
+            b = work.remove(work.size() - 1);
+            for (NameOfLabel l: LoopOptimizer.targets(b.last())){
+                t = byLabel.get(l.toString());
+                if (t != null && seen.add(t)){
+                    work.add(t);
+                }
+            }
+        }
+        for (Block bl: blocks){
+            if (seen.contains(bl)){
+                ret.add(bl);
+            } else {
+                removedBlocks++;
+            }
+        }
+        return ret;
+    }
+
+    // start a trace at the first block nobody has placed yet, and keep following successors that haven't been placed
+    // we'd rather follow the block that used to come next, since that keeps the code in the order it was written
+    // (the body of a loop right under its condition), then the false branch so the CJUMP can fall into it
+    private ArrayList<Block> traces(ArrayList<Block> blocks){
+        HashMap<String, Block> byLabel = new HashMap();
+        ArrayList<Block> order = new ArrayList();
+        Block b, next, t;
+        Stm last;
+
+        for (Block bl: blocks){
+            byLabel.put(bl.label(), bl);
+        }
+
+        for (Block start: blocks){
+            b = start;
+            while (b != null && !b.marked){
+                b.marked = true;
+                order.add(b);
+                last = b.last();
+                next = null;
+
+                if (b.follows != null && !b.follows.marked){
+                    for (NameOfLabel l: LoopOptimizer.targets(last)){
+                        if (l.toString().equals(b.follows.label())){
+                            next = b.follows;
+                        }
+                    }
+                }
+                if (next == null && last instanceof CJUMP){
+                    t = byLabel.get(((CJUMP)last).iffalse.toString());
+                    next = (t != null && !t.marked) ? t : byLabel.get(((CJUMP)last).iftrue.toString());
+                } else if (next == null){
+                    for (NameOfLabel l: LoopOptimizer.targets(last)){
+                        t = byLabel.get(l.toString());
+                        if (next == null && t != null && !t.marked){
+                            next = t;
+                        }
+                    }
+                }
+                b = next;
+            }
+        }
+        return order;
+    }
+
+    // now that the blocks are in order: JUMPs to the next label go away, CJUMPs followed by their true label get
+    // flipped around, and CJUMPs followed by neither label get a false label of their own that jumps to the real one
+    private ArrayList<Stm> fixJumps(ArrayList<Stm> stms){
+        ArrayList<Stm> out = new ArrayList();
+        Stm s, next;
+        CJUMP c;
+        NameOfLabel f;
+
+        for (int i = 0; i < stms.size(); i++){
+            s = stms.get(i);
+            next = i + 1 < stms.size() ? stms.get(i + 1) : null;
+
+            if (s instanceof JUMP && ((JUMP)s).targets.size() == 1 && isLabel(next, ((JUMP)s).targets.get(0))){
+                removedJumps++;
+                continue;
+            }
+            if (s instanceof CJUMP){
+                c = (CJUMP)s;
+                if (isLabel(next, c.iftrue)){
+                    s = new CJUMP(notRel(c.relop), c.left, c.right, c.iffalse, c.iftrue);
+                } else if (!isLabel(next, c.iffalse)){
+                    f = NameOfLabel.generateLabel("false");
+                    out.add(new CJUMP(c.relop, c.left, c.right, c.iftrue, f));
+                    out.add(new LABEL(f));
+                    s = new JUMP(c.iffalse);
+                }
+            }
+            out.add(s);
+        }
+        return out;
+    }
+
+    private static boolean isLabel(Stm s, NameOfLabel l){
+        return s instanceof LABEL && ((LABEL)s).label.toString().equals(l.toString());
+    }
+
+    // the opposite comparison, so we can branch on the other label
+    public static int notRel(int relop){
+        switch (relop){
+            case CJUMP.EQ:
+                return CJUMP.NE;
+            case CJUMP.NE:
+                return CJUMP.EQ;
+            case CJUMP.LT:
+                return CJUMP.GE;
+            case CJUMP.GE:
+                return CJUMP.LT;
+            case CJUMP.GT:
+                return CJUMP.LE;
+            case CJUMP.LE:
+                return CJUMP.GT;
+            case CJUMP.ULT:
+                return CJUMP.UGE;
+            case CJUMP.UGE:
+                return CJUMP.ULT;
+            case CJUMP.UGT:
+                return CJUMP.ULE;
+            case CJUMP.ULE:
+                return CJUMP.UGT;
+            default:
+                throw new UnsupportedOperationException(String.format("Could not find CJUMP #%d", relop));
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package global;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import tree.*;
+
+// local value numbering over the linearized statements of a method, one basic block at a time
+// an expression or load we already worked out earlier in the block, that nothing has changed since, can come out of
+// a temp instead of being worked out again. a load from somewhere we just stored to is the value we stored, and a
+// store that gets stored over before anything could read it doesn't have to happen at all
+// we go over each block twice: the first time finds which values get used again and which stores are dead, the
+// second puts those values into temps the first time they're worked out, uses the temps after that, and drops
+// the dead stores
+public class ValueNumbering {
+
+    public int eliminated = 0;      // how many expressions we replaced with a temp we already had
+    public int deadStores = 0;      // how many stores we dropped
+    private int c = 0;
+
+    // something we worked out (or stored) in this block, and what holds it if it gets used again
+    private static class Value {
+        Exp exp;
+        Exp holder;
+        Exp stored;     // what a store put there, as we were given it
+        boolean reused;
+        Value(Exp e){ exp = e; }
+    }
+
+    // a store nothing has read from yet
+    private static class Store {
+        int index;
+        Exp addr;
+        Store(int i, Exp a){ index = i; addr = a; }
+    }
+
+    private AliasAnalysis aliases;
+    private ArrayList<Value> available = new ArrayList();
+    private ArrayList<Value> found;     // every value in the block, in the order we first saw them
+    private int next;                   // how far through those we are the second time around
+    private boolean rewriting;          // is this the second time around?
+    private ArrayList<Stm> before;      // moves into temps that go in front of the statement we're on
+    private ArrayList<Store> pending;   // stores that could still turn out to be dead
+    private HashSet<Integer> dead;      // where the dead stores are in the block
+    private int index;                  // where the statement we're on is in the block
+
+    public ValueNumbering(){
+        this(new AliasAnalysis());
+    }
+
+    public ValueNumbering(AliasAnalysis aliases){
+        this.aliases = aliases;
+    }
+
+    public List<Stm> number(List<Stm> statements){
+        ArrayList<Stm> out = new ArrayList();
+        int start = 0;
+
+        aliases.analyze(statements);
+        // a block starts at a label, or right after a jump
+        for (int i = 1; i <= statements.size(); i++){
+            if (i == statements.size() || statements.get(i) instanceof LABEL
+                    || statements.get(i - 1) instanceof JUMP || statements.get(i - 1) instanceof CJUMP){
+                out.addAll(numberBlock(statements.subList(start, i)));
+                start = i;
+            }
+        }
+        return out;
+    }
+
+    private List<Stm> numberBlock(List<Stm> block){
+        ArrayList<Stm> out = new ArrayList();
+        Stm s;
+
+        found = new ArrayList();
+        pending = new ArrayList();
+        dead = new HashSet();
+        rewriting = false;
+        available.clear();
+        for (index = 0; index < block.size(); index++){
+            before = new ArrayList();
+            visit(block.get(index));
+        }
+
+        next = 0;
+        rewriting = true;
+        available.clear();
+        for (index = 0; index < block.size(); index++){
+            before = new ArrayList();
+            s = visit(block.get(index));
+            out.addAll(before);
+            if (dead.contains(index)){
+                deadStores++;
+            } else {
+                out.add(s);
+            }
+        }
+        return out;
+    }
+
+    private Stm visit(Stm s){
+        Stm ret;
+        if (s instanceof MOVE){
+            MOVE m = (MOVE)s;
+            if (m.dst instanceof MEM){
+                ret = visitStore(m);
+            } else {
+                ret = new MOVE(m.dst, visit(m.src));
+                if (m.dst instanceof TEMP){
+                    killTemp(((TEMP)m.dst).temp);
+                }
+            }
+            if (m.src instanceof CALL){
+                killCall();
+            }
+            return ret;
+        } else if (s instanceof EVAL){
+            ret = new EVAL(visit(((EVAL)s).exp));
+            if (((EVAL)s).exp instanceof CALL){
+                killCall();
+            }
+            return ret;
+        } else if (s instanceof CJUMP){
+            CJUMP cj = (CJUMP)s;
+            return new CJUMP(cj.relop, visit(cj.left), visit(cj.right), cj.iftrue, cj.iffalse);
+        } else if (s instanceof JUMP || s instanceof LABEL){
+            return s;
+        } else {
+            throw new UnsupportedOperationException(
+                    String.format("Found unexpected Statement Type: %s", s.getClass()));
+        }
+    }
+
+    // after a store, loading from the same place gives back what we stored
+    private Stm visitStore(MOVE m){
+        Exp addr = ((MEM)m.dst).exp, dst = new MEM(visitAddress(addr)), src = visit(m.src);
+        Value v;
+
+        killStore(addr);
+        if (!rewriting){
+            for (Store p: pending){
+                if (LoopOptimizer.same(p.addr, addr)){
+                    dead.add(p.index);
+                }
+            }
+            pending.removeIf(p -> LoopOptimizer.same(p.addr, addr));
+            pending.add(new Store(index, addr));
+
+            v = new Value(m.dst);
+            v.stored = m.src;
+            found.add(v);
+        } else {
+            v = found.get(next++);
+            if (v.reused){
+                if (!(src instanceof TEMP || src instanceof CONST)){
+                    v.holder = new TEMP(new NameOfTemp(String.format("cse%03d", ++c)));
+                    before.add(new MOVE(v.holder, src));
+                    src = v.holder;
+                }
+                v.holder = src;
+            }
+        }
+        available.add(v);
+        return new MOVE(dst, src);
+    }
+
+    // a base plus a constant goes straight into the load or store, so only the base is worth keeping around
+    private Exp visitAddress(Exp e){
+        if (e instanceof BINOP && (((BINOP)e).binop == BINOP.PLUS || ((BINOP)e).binop == BINOP.MINUS)
+                && ((BINOP)e).right instanceof CONST){
+            return new BINOP(((BINOP)e).binop, visit(((BINOP)e).left), ((BINOP)e).right);
+        }
+        return visit(e);
+    }
+
+    // values are always looked up by the expression we were given, so both times around see the same values
+    private Exp visit(Exp e){
+        Value v;
+        Exp rebuilt;
+        if (e instanceof BINOP || e instanceof MEM){
+            v = find(e);
+            if (v != null){
+                if (!rewriting){
+                    v.reused = true;
+                    return e;
+                }
+                eliminated++;
+                return v.holder;
+            }
+
+            if (e instanceof BINOP){
+                rebuilt = new BINOP(((BINOP)e).binop, visit(((BINOP)e).left), visit(((BINOP)e).right));
+            } else {
+                rebuilt = new MEM(visitAddress(((MEM)e).exp));
+                // this load really happens, so whatever it could read isn't dead
+                if (!rewriting){
+                    pending.removeIf(p -> aliases.mayAlias(((MEM)e).exp, p.addr));
+                }
+            }
+
+            if (!rewriting){
+                v = new Value(e);
+                found.add(v);
+            } else {
+                v = found.get(next++);
+                if (v.reused){
+                    v.holder = new TEMP(new NameOfTemp(String.format("cse%03d", ++c)));
+                    before.add(new MOVE((TEMP)v.holder, rebuilt));
+                    rebuilt = v.holder;
+                }
+            }
+            available.add(v);
+            return rebuilt;
+        } else if (e instanceof CALL){
+            ArrayList<Exp> args = new ArrayList();
+            if (((CALL)e).args != null){
+                for (Exp arg: ((CALL)e).args.toList()){
+                    args.add(visit(arg));
+                }
+            }
+            return new CALL(((CALL)e).func, args);
+        } else if (e instanceof CONST || e instanceof TEMP || e instanceof NAME){
+            return e;
+        } else {
+            throw new UnsupportedOperationException(
+                    String.format("Found unexpected Expression Type: %s", e.getClass()));
+        }
+    }
+
+    private Value find(Exp e){
+        for (Value v: available){
+            if (LoopOptimizer.same(v.exp, e)){
+                return v;
+            }
+        }
+        return null;
+    }
+
+    // anything worked out from t is out of date once t changes, and so is a store of t
+    // a store that can't be matched any more can't be found dead either
+    private void killTemp(NameOfTemp t){
+        available.removeIf(v -> uses(v.exp, t) || (v.stored instanceof TEMP && ((TEMP)v.stored).temp.equals(t)));
+        if (!rewriting){
+            pending.removeIf(p -> uses(p.addr, t));
+        }
+    }
+
+    // a store can change anything loaded from somewhere it might point to
+    private void killStore(Exp addr){
+        available.removeIf(v -> loadsFrom(v.exp, addr));
+    }
+
+    // a call can read or change anything on the heap, but nothing in our frame, and takes the outgoing and global
+    // registers with it
+    private void killCall(){
+        available.removeIf(v -> loadsFrom(v.exp, null) || clobbered(v.exp)
+                || (v.stored != null && clobbered(v.stored)));
+        if (!rewriting){
+            pending.removeIf(p -> !aliases.isFrame(p.addr));
+        }
+    }
+
+    private static boolean uses(Exp e, NameOfTemp t){
+        if (e instanceof TEMP){
+            return ((TEMP)e).temp.equals(t);
+        } else if (e instanceof BINOP){
+            return uses(((BINOP)e).left, t) || uses(((BINOP)e).right, t);
+        } else if (e instanceof MEM){
+            return uses(((MEM)e).exp, t);
+        }
+        return false;
+    }
+
+    // does e load from anywhere a store to addr could change? with no address, anywhere off of our frame
+    private boolean loadsFrom(Exp e, Exp addr){
+        if (e instanceof MEM){
+            if (addr == null ? !aliases.isFrame(((MEM)e).exp) : aliases.mayAlias(((MEM)e).exp, addr)){
+                return true;
+            }
+            return loadsFrom(((MEM)e).exp, addr);
+        } else if (e instanceof BINOP){
+            return loadsFrom(((BINOP)e).left, addr) || loadsFrom(((BINOP)e).right, addr);
+        }
+        return false;
+    }
+
+    private static boolean clobbered(Exp e){
+        if (e instanceof TEMP){
+            return ((TEMP)e).temp.toString().startsWith("%o") || ((TEMP)e).temp.toString().startsWith("%g");
+        } else if (e instanceof BINOP){
+            return clobbered(((BINOP)e).left) || clobbered(((BINOP)e).right);
+        } else if (e instanceof MEM){
+            return clobbered(((MEM)e).exp);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,25 @@
+package global;
+
+// a field, an arg or a local, and where it lives
+// fields are numbered from 0 counting the ones we inherit, and are 4 bytes apiece past this. args are numbered from
+// 1, since this is %i0, and live in %i1 on. locals are numbered from 1 too, and live 4 bytes apiece below %fp
+public class VarSymbol extends Symbol {
+
+    public static final int FIELD = 0, ARG = 1, LOCAL = 2;
+
+    public final String type;
+    public final int kind;
+    public int slot = -1;
+    public int offset = 0;      // from this for a field, from %fp for a local
+
+    public VarSymbol(int id, String name, String type, int kind){
+        super(id, name);
+        this.type = type;
+        this.kind = kind;
+    }
+
+    public void place(int slot){
+        this.slot = slot;
+        offset = kind == FIELD ? 4 * slot : kind == LOCAL ? -4 * slot : 0;
+    }
+}
@@ -5,7 +5,6 @@ import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.IOException;
 
-import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Arrays;
@@ -21,31 +20,12 @@ import assem.*;
 
 import global.*;
 class Semantic {
-	private static HashMap<String, HashMap> getMethodInfo(HashMap<String, HashMap> tree, String methodName){
-		HashMap<String, HashMap> scope;
-		String[] parts = methodName.split("\\$"); // split the method name into parts
-
-		scope = tree.get(parts[0]);
-		scope = scope.get(parts[1]);
-
-		return findMethodDecl(scope, parts[parts.length - 1]);
-	}
-
-	private static HashMap<String, HashMap> findMethodDecl(HashMap<String, HashMap> methodDecls, String number){
-		HashMap<String, HashMap> found = null;
-
-		for (String t: methodDecls.keySet()){
-			if (t.equals("$end")){
-				found = methodDecls.get(t);
-				if (((String)found.get("$info").get("$declnum")).equals(number)){
-					break;
-				}
-			} else if (!t.startsWith("$")) {
-				found = findMethodDecl(methodDecls.get(t), number);
-			}
+	// -O1 allocates registers with linear scan, -O2 with graph coloring
+	private static MaximalMunch newMuncher(int optLevel, boolean leaf){
+		if (optLevel < 2){
+			return new MaximalMunch(new LinearScanAllocator(), leaf);
 		}
-
-		return found;
+		return new MaximalMunch(new GraphColorAllocator(), leaf);
 	}
 
 	public static void main(String[] args)
@@ -53,6 +33,18 @@ class Semantic {
 		// are we debugging and what options do we have enabled?
 		boolean opts = true;
 		boolean verboseOpt = false;
+		boolean statsOpt = false;
+		// -O0 turns off the IR optimizations, -O1 uses linear scan register allocation, -O2 uses graph coloring
+		int optLevel = 2;
+		// -floop=rotate lowers while loops as a guarded do-while, -floop=plain keeps the test at the top
+		// by default, we rotate whenever we optimize
+		String loopForm = null;
+		// -finline-print appends to the runtime's output queue right where we print, only calling print_int when it's full
+		boolean inlinePrint = false;
+		// -finline-limit=<n> inlines methods with up to n IR nodes (plus any method with only one caller), 0 turns it off
+		int inlineBudget = Inliner.DEFAULT_BUDGET;
+		// peephole rules turned off with -fno-<rule>
+		ArrayList<String> disabledRules = new ArrayList();
 
 		// find the file we are scanning and its location
 		final String argIn = args[args.length - 1];
@@ -91,6 +83,8 @@ class Semantic {
 		PrintWriter IRPrintLoc = null;
 		IRTranslator translate = null;
 		ArrayList<Stm> fragments;
+		Inliner inliner = null;
+		DeadMethodEliminator deadMethods = null;
 		// IR Tree printing
 		PrintWriter IRTreePrint = null;
 		// Output from canonicalization
@@ -99,16 +93,36 @@ class Semantic {
 		List<Stm> linear;
 		PrintWriter LinWriter = null;
 		// Applies maximal munch
-		MaximalMunch muncher;
+		MaximalMunch muncher, leafMuncher;
+		List<Instruction> instructions, leafInstructions;
+		boolean leaf;
 		// Current method info
 		String methodDecl = null, curMethod = null;
-		HashMap<String, Object> methodInfo = null;
+		MethodSymbol methodInfo = null;
 		int nArgs = 0, nLocs = 0, nTemps = 0;
 		// Output from Maximal Munch
 		ArrayList<String> lines = new ArrayList();
-		ArrayList<String> munched = null;
+		List<Instruction> code = null;
+		DelaySlotFiller filler = null;
+		PeepholeOptimizer peephole = null;
+		TailCallEliminator tails = null;
+		ValueNumbering numbering = null;
+		AliasAnalysis aliases = null;
+		EscapeAnalysis escapes = null;
+		BumpAllocator bump = null;
+		PrintInliner prints = null;
+		int frameWords = 0;
+		// what the collector needs to find its way through our frames
+		StackMaps maps = new StackMaps();
+		AliasAnalysis types = null;
+		ArrayList<Integer> pointerSlots = null;
+		int frameLocs = 0;
 		// Final .s output
 		PrintWriter FinalOut = null;
+		// Per method statistics from the backend
+		PrintWriter StatsOut = null;
+		// how long it took to get from the syntax tree to the IR
+		long frontEnd = 0;
 
 		// if we are debugging, we can process additional instructions
 		for(int i = 0; i < args.length-1; i++) {
@@ -116,6 +130,18 @@ class Semantic {
 				opts = true;
 			} else if (opts && args[i].equalsIgnoreCase("verbose")) {
 				verboseOpt = true;
+			} else if (opts && args[i].equalsIgnoreCase("stats")) {
+				statsOpt = true;
+			} else if (args[i].matches("-O[0-9]")) {
+				optLevel = Integer.parseInt(args[i].substring(2));
+			} else if (args[i].matches("-finline-limit=[0-9]+")) {
+				inlineBudget = Integer.parseInt(args[i].substring(15));
+			} else if (args[i].equals("-finline-print")) {
+				inlinePrint = true;
+			} else if (args[i].startsWith("-floop=")) {
+				loopForm = args[i].substring(7);
+			} else if (args[i].startsWith("-fno-")) {
+				disabledRules.add(args[i].substring(5));
 			}
 		}
 
@@ -148,6 +174,7 @@ class Semantic {
 			}
 
 			// first dispatch to create the table
+			frontEnd = System.nanoTime();
 			if (verboseOpt) {
 				tablePrintLoc = new PrintWriter("./debug/verbose/" + debugLoc + ".tablemake.debug");
 				creator = new LookupCreator(fileName, tablePrintLoc);
@@ -182,12 +209,17 @@ class Semantic {
 					if (errors == 0){
 						if (verboseOpt){
 							IRPrintLoc = new PrintWriter("./debug/verbose/" + debugLoc + ".ircreate.debug");
-							translate = new IRTranslator(fileName, IRPrintLoc, creator.getTable());
+							translate = new IRTranslator(fileName, IRPrintLoc, creator.getTable(),
+									tableChecker.getAnnotations());
 						} else {
-							translate = new IRTranslator(fileName, creator.getTable());
+							translate = new IRTranslator(fileName, creator.getTable(), tableChecker.getAnnotations());
+						}
+						if (loopForm == null ? optLevel > 0 : loopForm.equals("rotate")){
+							translate.setRotateLoops(true);
 						}
 						// get the fragments from the tree
 						fragments = translate.getFragments(tree);
+						frontEnd = System.nanoTime() - frontEnd;
 						if(verboseOpt){
 							IRPrintLoc.close();
 						}
@@ -195,6 +227,16 @@ class Semantic {
 						// by this point, we should not have any errors, but just in case
 						errors = errors + translate.getErrors();
 						if (errors == 0){
+							// calls are bound to one method already, so small callees can be copied into their callers
+							if (optLevel > 0 && inlineBudget > 0){
+								inliner = new Inliner(inlineBudget);
+								fragments = inliner.inline(fragments);
+							}
+							// only what main can get to needs to be emitted
+							if (optLevel > 0){
+								deadMethods = new DeadMethodEliminator();
+								fragments = deadMethods.eliminate(fragments, entryPoint);
+							}
 
 							// print out the debugging from our IR Tree
 							if(verboseOpt){
@@ -204,87 +246,290 @@ class Semantic {
 
 								LinWriter = new PrintWriter("./debug/verbose/" + debugLoc + ".linear.debug");
 							}
+							if (statsOpt){
+								StatsOut = new PrintWriter("./debug/verbose/" + debugLoc + ".stats.debug");
+								StatsOut.println(String.format("Front end took %.3f ms for %d classes, %d methods, %d vars",
+										frontEnd / 1e6, creator.getTable().classes().size(),
+										creator.getTable().numMethods(), creator.getTable().numVars()));
+								if (inliner != null){
+									StatsOut.println(String.format("Inlined %d call sites", inliner.inlined));
+								}
+								if (deadMethods != null){
+									StatsOut.println(String.format("Removed %d unreachable methods: %s",
+											deadMethods.removed.size(), deadMethods.removed));
+									StatsOut.println(String.format("Removed %d classes with no reachable methods: %s",
+											deadMethods.removedClasses.size(), deadMethods.removedClasses));
+								}
+							}
 
-							// at first, add global info, header info
+							// at first, add global info
 							lines.add( new OperationInstruction("\t.global start").format());
-							lines.add( new LabelInstruction( new NameOfLabel("start")).format());
-							lines.add( new LabelInstruction( new NameOfLabel(entryPoint)).format());
-							lines.add( new Comment("Main doesn't allocate stack space").format());
-							lines.add( new OperationInstruction("\tba\t"+entryPoint+"$prologueEnd").format());
-							lines.add( new OperationInstruction("\tnop").format());
 
 							// add all our code
 							for(Stm f: fragments){
-								muncher = new MaximalMunch();
 								// what method?
 								methodDecl = ((LABEL)((SEQ)f).left).label.toString();
 								curMethod = methodDecl.substring(0, methodDecl.lastIndexOf("$"));
 
+								// fold whatever we can work out at compile time, then trade multiplies for shifts and adds
+								if (optLevel > 0){
+									f = new ConstantFolder().fold(f);
+									f = new StrengthReducer().reduce(f);
+								}
+
 								// applies linearization to the fragment
-								munched = new ArrayList();
 								linear = Canon.linearize(f);
+								// calls whose value we return right away don't need a register window of their own
+								tails = null;
+								if (optLevel > 0 && !curMethod.equals(entryPoint)){
+									tails = new TailCallEliminator();
+									linear = tails.eliminate(linear, curMethod);
+								}
+								// objects and arrays that never leave this method don't need to go on the heap
+								escapes = null;
+								frameWords = 0;
+								if (optLevel > 0){
+									nLocs = 0;
+									if (!curMethod.equals(entryPoint)){
+										methodInfo = creator.getTable().method(curMethod);
+										nLocs = methodInfo.locals.length;
+									}
+									escapes = new EscapeAnalysis(nLocs);
+									linear = escapes.analyze(linear);
+									frameWords = escapes.frameWords;
+								}
+								// whatever is left on the heap bumps the runtime's pointer instead of calling alloc_obj or alloc_array
+								bump = null;
+								if (optLevel > 0){
+									bump = new BumpAllocator();
+									linear = bump.lower(linear);
+								}
+								// and prints go straight into the runtime's output queue, if we were asked to
+								prints = null;
+								if (inlinePrint){
+									prints = new PrintInliner();
+									linear = prints.lower(linear);
+								}
+								// anything worked out twice in a block comes out of a temp the second time
+								// the types of our temps tell both passes which loads and stores can't overlap
+								numbering = null;
+								if (optLevel > 0){
+									aliases = new AliasAnalysis(creator.getTable(), curMethod);
+									numbering = new ValueNumbering(aliases);
+									linear = numbering.number(linear);
+								}
+								// pull invariant code out of loops, then lay the blocks out so jumps fall through
+								if (optLevel > 0){
+									linear = new LoopOptimizer(aliases).optimize(linear);
+									linear = new TraceScheduler().schedule(linear);
+								}
 								if (verboseOpt){
 									LinWriter.println("Method: " + curMethod);
 									TreePrint.print(LinWriter, linear);
 									LinWriter.println();
 								}
-								munched.addAll(muncher.formatStms(linear));
+								// the collector has to know which of our temps could be holding something on the heap
+								types = new AliasAnalysis(creator.getTable(), curMethod);
+								types.analyze(linear);
+								code = new ArrayList();
+								filler = null;
+								peephole = null;
+								muncher = newMuncher(optLevel, false);
+								instructions = muncher.maximalMunch(linear);
+
+								// methods that don't call anything and can keep everything in registers don't need a
+								// register window, their args are still sitting in our caller's %o registers
+								leaf = false;
+								if (optLevel > 0 && !curMethod.equals(entryPoint) && !muncher.hasCall(instructions)){
+									methodInfo = creator.getTable().method(curMethod);
+									if (methodInfo.locals.length == 0 && frameWords == 0
+											&& methodInfo.args.length + 1 <= 6){
+										leafMuncher = newMuncher(optLevel, true);
+										leafInstructions = leafMuncher.maximalMunch(linear);
+										if (leafMuncher.maxTemps == 0){
+											muncher = leafMuncher;
+											instructions = leafInstructions;
+											leaf = true;
+										}
+									}
+								}
+
+								// locals and spill slots that could hold something on the heap are roots for the collector
+								// even when they're dead, so they get cleared as soon as we have a frame
+								pointerSlots = new ArrayList();
+								if (!leaf){
+									frameLocs = 0;
+									if (!curMethod.equals(entryPoint)){
+										methodInfo = creator.getTable().method(curMethod);
+										frameLocs = methodInfo.locals.length;
+									}
+									for (int k = 1; k <= frameLocs; k++){
+										if (types.mayPointLocal(k)){
+											pointerSlots.add(-4 * k);
+										}
+									}
+									for (NameOfTemp t: muncher.getSpillSlots().keySet()){
+										if (types.mayPoint(t)){
+											pointerSlots.add(-4 * (frameLocs + frameWords + muncher.getSpillSlots().get(t)));
+										}
+									}
+									pointerSlots.sort(null);
+								}
 
 								// if we are on the main function, handle it differently than all other methods
 								if (curMethod.equals(entryPoint)){
-									// header info already added
+									// add header info
+									code.add(new LabelInstruction( new NameOfLabel("start")));
+									code.add(new LabelInstruction( new NameOfLabel(entryPoint)));
+									if (muncher.maxTemps == 0 && frameWords == 0){
+										code.add(new Comment("Main doesn't allocate stack space"));
+									} else {
+										// main only needs a frame if it has temps to spill, or objects that live in it
+										code.add(new Comment("Main allocates stack space for spilled temps"));
+										code.add(new OperationInstruction(
+												String.format("\t.set\tLOCS, %d", frameWords)));
+										code.add(new OperationInstruction(
+												String.format("\t.set\tTMPS, %d", muncher.maxTemps)));
+										code.add(new OperationInstruction(
+												"\tsave\t%sp, -4*(LOCS+TMPS+1+16)&-8, %sp"));
+										for (int slot: pointerSlots){
+											code.add(new OperationInstruction(String.format("\tst\t%%g0, [%%fp - %d]", -slot)));
+										}
+									}
+									code.add(new OperationInstruction("\tba\t`j0", "jump into main", null, null,
+											Arrays.asList(new NameOfLabel(entryPoint + "$prologueEnd"))));
+									code.add(new OperationInstruction("\tnop"));
 									// add the method code
-									lines.addAll(munched);
-									lines.add(new Comment("Finish program").format());
-									// on main, just clear o0 and exit
-									lines.add(
-										new LabelInstruction(new NameOfLabel(entryPoint + "$epilogueBegin")).format());
-									lines.add( new OperationInstruction("\tclr\t%o0").format());
-									lines.add( new OperationInstruction("\tcall\texit").format());
-									lines.add( new OperationInstruction("\tnop").format());
+									code.addAll(instructions);
+									code.add(new Comment("Finish program"));
+									// on main, write out whatever the runtime still has waiting to be printed, clear o0 and exit
+									code.add(
+										new LabelInstruction(new NameOfLabel(entryPoint + "$epilogueBegin")));
+									code.add(new OperationInstruction("\tcall\tprint_flush"));
+									code.add(new OperationInstruction("\tnop"));
+									code.add(new OperationInstruction("\tclr\t%o0"));
+									code.add(new OperationInstruction("\tcall\texit"));
+									code.add(new OperationInstruction("\tnop"));
 								} else {
-									methodInfo = (HashMap<String, Object>)getMethodInfo(creator.getTable(), curMethod).get("$info");
-									nArgs = (int)methodInfo.get("$numargs");
-									nLocs = (int)methodInfo.get("$numlocs");
+									methodInfo = creator.getTable().method(curMethod);
+									nArgs = methodInfo.args.length;
+									nLocs = methodInfo.locals.length;
 									nTemps = muncher.maxTemps;
 
 									// add header info
-									lines.add( new Comment().format() );
-									lines.add( new Comment(
+									code.add(new Comment());
+									code.add(new Comment(
 										String.format(
 											"Method Declaration of %s -- #locs = %d, #args (including this)"+
-											" = %d, #temps (max) = %d", curMethod, nLocs, nArgs + 1, nTemps
-									)).format() );
-									lines.add(new Comment( "\tRegister save area = 16 words, return area = 1 word" ).format());
-									lines.add(new LabelInstruction(new NameOfLabel(curMethod)).format());
-									lines.add(new OperationInstruction(
-											String.format("\t.set\tLOCS, %d", nLocs)).format());
-									lines.add(new OperationInstruction(
-											String.format("\t.set\tARGS, %d", nArgs)).format());
-									lines.add(new OperationInstruction(
-											String.format("\t.set\tTMPS, %d", nTemps)).format());
-									lines.add(new OperationInstruction(
-											"\tsave\t%sp, -4*(LOCS+TMPS+ARGS+1+16)&-8, %sp"
-									).format());
+											" = %d, #temps (spilled) = %d", curMethod, nLocs, nArgs + 1, nTemps
+									)));
+									if (leaf){
+										// leaves run in their caller's window, so there is nothing to save or restore
+										code.add(new Comment("\tFrame: leaf routine, no register window or stack space"));
+										code.add(new LabelInstruction(new NameOfLabel(curMethod)));
+									} else {
+										code.add(new Comment("\tFrame: own register window (save/restore)"));
+										code.add(new Comment( "\tRegister save area = 16 words, return area = 1 word" ));
+										code.add(new LabelInstruction(new NameOfLabel(curMethod)));
+										code.add(new OperationInstruction(
+												String.format("\t.set\tLOCS, %d", nLocs + frameWords)));
+										code.add(new OperationInstruction(
+												String.format("\t.set\tARGS, %d", nArgs)));
+										code.add(new OperationInstruction(
+												String.format("\t.set\tTMPS, %d", nTemps)));
+										code.add(new OperationInstruction(
+												"\tsave\t%sp, -4*(LOCS+TMPS+ARGS+1+16)&-8, %sp"
+										));
+										for (int slot: pointerSlots){
+											code.add(new OperationInstruction(String.format("\tst\t%%g0, [%%fp - %d]", -slot)));
+										}
+									}
 
 									// add the method code
-									lines.addAll(munched);
+									code.addAll(instructions);
 									// add aftermath stuff
-									lines.add(new Comment(
-										String.format("\tPrepare to return from %s", curMethod)).format());
-									lines.add(new LabelInstruction(
-											new NameOfLabel(curMethod + "$epilogueBegin")).format());
-									lines.add(new OperationInstruction(
-											"\tret", "Return from " + curMethod).format());
-									lines.add(new OperationInstruction(
-											"\trestore", "In the delay slot").format());
-									lines.add(new Comment().format());
+									code.add(new Comment(
+										String.format("\tPrepare to return from %s", curMethod)));
+									code.add(new LabelInstruction(
+											new NameOfLabel(curMethod + "$epilogueBegin")));
+									if (leaf){
+										// our return value is already in %o0, right where our caller wants it
+										code.add(new OperationInstruction(
+												"\tretl", "Return from leaf " + curMethod));
+										code.add(new OperationInstruction(
+												"\tnop", "In the delay slot"));
+									} else {
+										code.add(new OperationInstruction(
+												"\tret", "Return from " + curMethod));
+										code.add(new OperationInstruction(
+												"\trestore", "In the delay slot"));
+									}
+									code.add(new Comment());
+								}
+
+								// clean up what instruction selection left behind, then put something useful in the delay
+								// slots now that we know what registers everything is in
+								if (optLevel > 0){
+									peephole = new PeepholeOptimizer(muncher.tempMap);
+									for (String rule: disabledRules){
+										peephole.removeRule(rule);
+									}
+									code = peephole.optimize(code);
+									filler = new DelaySlotFiller(muncher.tempMap);
+									code = filler.fill(code);
 								}
+								// every call the collector could start from gets a label, and an entry in the map
+								code = maps.mark(code, muncher.tempMap, types, curMethod, pointerSlots);
+								lines.addAll(muncher.format(code));
+								if (statsOpt){
+									StatsOut.println(String.format(
+											"Method %s: %s allocation took %.3f ms, %d spill slots%s, %d/%d delay slots filled",
+											curMethod, muncher.getAllocator().getName(), muncher.allocTime / 1e6,
+											muncher.maxTemps, leaf ? ", leaf" : "",
+											filler == null ? 0 : filler.filled, filler == null ? 0 : filler.slots));
+									if (numbering != null && numbering.eliminated + numbering.deadStores > 0){
+										StatsOut.println(String.format(
+												"\tvalue numbering: %d expressions reused, %d dead stores removed",
+												numbering.eliminated, numbering.deadStores));
+									}
+									if (escapes != null && escapes.scalarReplaced + escapes.stackAllocated > 0){
+										StatsOut.println(String.format(
+												"\tescape analysis: %d allocations replaced by temps, %d in the frame (%d words)",
+												escapes.scalarReplaced, escapes.stackAllocated, escapes.frameWords));
+									}
+									if (bump != null && bump.inlined > 0){
+										StatsOut.println(String.format("\tbump allocation: %d allocations inlined",
+												bump.inlined));
+									}
+									if (prints != null && prints.inlined > 0){
+										StatsOut.println(String.format("\tprint: %d prints inlined", prints.inlined));
+									}
+									if (tails != null && tails.selfCalls + tails.tailCalls > 0){
+										StatsOut.println(String.format("\ttail calls: %d to itself, %d to other methods",
+												tails.selfCalls, tails.tailCalls));
+									}
+									if (pointerSlots.size() > 0){
+										StatsOut.println(String.format("\tgc: %d frame slots could hold pointers",
+												pointerSlots.size()));
+									}
+									if (peephole != null){
+										StatsOut.println("\tpeephole hits: " + peephole.hits);
+									}
+								}
+							}
+
+							// class layouts and stack maps for the collector in the runtime
+							lines.addAll(maps.emit(creator.getTable()));
+							if (statsOpt){
+								StatsOut.println(String.format("Stack maps for %d call sites", maps.sites));
 							}
 
 							if(verboseOpt){
 								LinWriter.close();
 							}
+							if(statsOpt){
+								StatsOut.close();
+							}
 
 							FinalOut = new PrintWriter(assembleLoc);
 							for (String s: lines){
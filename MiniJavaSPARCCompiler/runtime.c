@@ -1,17 +1,401 @@
-#include <stdio.h>
+// built with -DFREESTANDING, the runtime doesn't need libc at all: it makes its own system calls, and programs
+// linked with it start right at start, in the code we compile
+#ifdef FREESTANDING
+#include <stddef.h>
+#else
 #include <stdlib.h>
+#include <unistd.h>
+#include <sys/mman.h>
+#endif
+
+// the smallest space we ever hand out from
+#define MIN_SPACE_BYTES (1 << 20)
+// how many frames of the runtime itself can be between the collector and the first frame of compiled code
+#define RUNTIME_FRAMES 8
+// how many numbers can be waiting to be printed, and how much text we write at a time
+#define PRINT_QUEUE 1024
+#define OUT_BYTES (1 << 16)
+// the most text one number can turn into: a sign, ten digits and a newline
+#define INT_CHARS 12
+
+#ifdef FREESTANDING
+// from the linux headers for sparc
+#define SYS_EXIT 1
+#define SYS_WRITE 4
+#define SYS_MMAP 71
+#define SYS_MUNMAP 73
+#define PROT_READ 0x1
+#define PROT_WRITE 0x2
+#define MAP_PRIVATE 0x02
+#define MAP_ANONYMOUS 0x20
+#define MAP_FAILED ((void*) -1)
+
+void exit(int status);
+
+// the system call number goes in %g1 and its args in %o0 on. the result comes back in %o0, and if the carry is
+// set, it's an error number we hand back negated
+static int sys_call(int number, int a, int b, int c, int d, int e, int f){
+	register int g1 asm("g1") = number;
+	register int o0 asm("o0") = a;
+	register int o1 asm("o1") = b;
+	register int o2 asm("o2") = c;
+	register int o3 asm("o3") = d;
+	register int o4 asm("o4") = e;
+	register int o5 asm("o5") = f;
+	asm volatile("ta\t0x10\n\tbcc\t1f\n\tnop\n\tsub\t%%g0, %%o0, %%o0\n1:"
+		: "+r" (o0)
+		: "r" (g1), "r" (o1), "r" (o2), "r" (o3), "r" (o4), "r" (o5)
+		: "memory", "cc");
+	return o0;
+}
+
+static int write(int fd, const void* buf, size_t bytes){
+	return sys_call(SYS_WRITE, fd, (int)buf, (int)bytes, 0, 0, 0);
+}
+
+static void* mmap(void* addr, size_t bytes, int prot, int flags, int fd, int offset){
+	int p = sys_call(SYS_MMAP, (int)addr, (int)bytes, prot, flags, fd, offset);
+	// error numbers only go up to 4095, so nothing we could get mapped at looks like one
+	return (unsigned int)p >= (unsigned int)-4095 ? MAP_FAILED : (void*)p;
+}
+
+static int munmap(void* addr, size_t bytes){
+	return sys_call(SYS_MUNMAP, (int)addr, (int)bytes, 0, 0, 0, 0);
+}
+
+// main calls this when it's done
+void exit(int status){
+	for (;;){
+		sys_call(SYS_EXIT, status, 0, 0, 0, 0, 0);
+	}
+}
+#endif
+
+// every allocation starts with a header word, and what we hand back points just past it
+// objects have the address of the layout of their class, which is word aligned
+// arrays have their size in words shifted up by two, with the low bit set
+// while collecting, something we already copied has the address of its copy, with the second bit set
+#define IS_ARRAY(h) ((h) & 1)
+#define IS_FORWARDED(h) ((h) & 2)
+// does v point into (or just past) something in the space we're copying from?
+#define IN_FROM(v) ((unsigned int)(v) > (unsigned int)from_start && (unsigned int)(v) <= (unsigned int)from_end)
 
 void print_int(int n);
-int* alloc_obj(int size);
+void print_flush(void);
+int* alloc_obj(int* layout, int size);
+int* alloc_array(int size);
+int* alloc_slow(int header, int size);
+
+// the next free word of the space we are handing out, and the word just past the end of it
+// compiled code bumps alloc_ptr itself, and only calls alloc_slow once the space doesn't have room
+int* alloc_ptr = 0;
+int* alloc_limit = 0;
 
-// prints n
+// the space everything lives in, and how big the next one should be
+static int* space = 0;
+static size_t space_bytes = MIN_SPACE_BYTES;
+
+// where the collector is copying to, and what it needs to know about the space it's copying from
+static int* to_ptr = 0;
+static int* from_start = 0;
+static int* from_end = 0;
+static unsigned int* starts = 0;
+
+// the compiler gives us the number of calls it made, then for each call (in the order of the code): its
+// address, which of the %l (low byte) and %i (next byte) registers of its window could hold pointers once it
+// returns, and the frame slots that could, which are a count followed by offsets from %fp
+// each class has a layout, which is its number of fields then a bitmap of the ones that hold pointers
+extern int gc_maps[];
+
+struct gc_site {
+	unsigned int ret;
+	unsigned int regs;
+	int* slots;
+};
+
+// numbers waiting to be printed, the next free word of the queue, and the word just past the end of it
+// compiled code can append to the queue itself, and only calls print_int once it's full
+static int print_queue[PRINT_QUEUE];
+int* print_ptr = print_queue;
+int* print_limit = print_queue + PRINT_QUEUE;
+
+// text waiting to be written
+static char out[OUT_BYTES];
+static int out_len = 0;
+
+// writes out everything in out, a write can take less than we give it
+static void write_out(void){
+	int done = 0, n;
+	while (done < out_len){
+		n = write(1, out + done, out_len - done);
+		if (n <= 0){
+			break;
+		}
+		done += n;
+	}
+	out_len = 0;
+}
+
+// turns everything in the queue into text, writing out the text whenever it fills up
+// digits come out lowest first, so they go into digits backwards
+static void drain(void){
+	char digits[INT_CHARS];
+	int* p;
+	unsigned int u;
+	int i;
+
+	for (p = print_queue; p < print_ptr; p++){
+		if (out_len > OUT_BYTES - INT_CHARS){
+			write_out();
+		}
+		// the smallest int doesn't have a positive int to go with it, but it does have an unsigned one
+		u = *p < 0 ? 0u - (unsigned int)*p : (unsigned int)*p;
+		i = INT_CHARS;
+		digits[--i] = '\n';
+		do {
+			digits[--i] = '0' + u % 10;
+			u /= 10;
+		} while (u != 0);
+		if (*p < 0){
+			digits[--i] = '-';
+		}
+		while (i < INT_CHARS){
+			out[out_len++] = digits[i++];
+		}
+	}
+	print_ptr = print_queue;
+}
+
+// prints n, once there's room for it
 void print_int(int n){
-	printf("%d\n", n);
+	if (print_ptr == print_limit){
+		drain();
+	}
+	*print_ptr++ = n;
+}
+
+// writes out everything printed so far, main does this right before it exits
+void print_flush(void){
+	drain();
+	write_out();
+}
+
+// writes out what we printed, then why we can't go on, and stops
+static void fail(const char* message){
+	int n = 0;
+	print_flush();
+	while (message[n] != 0){
+		n++;
+	}
+	write(2, message, n);
+	exit(1);
 }
 
-// used to create y and R variables at the top of each run
-// make sure you are freeing with free_ints() at the end of the program
+// how many words the allocation with this header takes up, counting the header
+static int words(int* h){
+	if (IS_ARRAY(h[0])){
+		return 1 + (h[0] >> 2);
+	}
+	return 1 + (((int*)h[0])[0] < 1 ? 1 : ((int*)h[0])[0]);
+}
+
+// mmap always gives back zeros, so everything we hand out starts at zero
+static int* map(size_t bytes){
+	int* p = (int*) mmap(0, bytes, PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS, -1, 0);
+	if (p == (int*) MAP_FAILED){
+		fail("out of memory\n");
+	}
+	return p;
+}
+
+// the header of the allocation v points somewhere into, if v points into the space we're copying from
+// the word just past an array still counts as inside of it, so anything pointing to a header is its own
+static int* allocation(int v){
+	int w;
+	unsigned int bits;
+	if (!IN_FROM(v)){
+		return 0;
+	}
+	w = (v - 4 - (int)from_start) >> 2;
+	bits = starts[w >> 5] & (0xffffffffu >> (31 - (w & 31)));
+	while (bits == 0){
+		w = (w & ~31) - 1;
+		bits = starts[w >> 5];
+	}
+	w = w | 31;
+	while (!(bits & (1u << (w & 31)))){
+		w--;
+	}
+	return from_start + w;
+}
+
+// copies the allocation starting at h, unless it already has been, and gives back where the copy is
+static int* forward(int* h){
+	int* copy;
+	int n, i;
+	if (IS_FORWARDED(h[0])){
+		return (int*)(h[0] & ~2);
+	}
+	copy = to_ptr;
+	n = words(h);
+	for (i = 0; i < n; i++){
+		copy[i] = h[i];
+	}
+	to_ptr += n;
+	h[0] = (int)copy | 2;
+	return copy;
+}
+
+// v, moved along with whatever it points into
+static int relocate(int v){
+	int* h = allocation(v);
+	if (h == 0){
+		return v;
+	}
+	return v + ((int)forward(h) - (int)h);
+}
+
+// finds the call we're returning to, the sites are sorted by address
+static struct gc_site* find_site(unsigned int ret){
+	struct gc_site* sites = (struct gc_site*)(gc_maps + 1);
+	int lo = 0, hi = gc_maps[0] - 1, mid;
+	while (lo <= hi){
+		mid = (lo + hi) / 2;
+		if (sites[mid].ret == ret){
+			return &sites[mid];
+		} else if (sites[mid].ret < ret){
+			lo = mid + 1;
+		} else {
+			hi = mid - 1;
+		}
+	}
+	return 0;
+}
+
+// every register window gets saved at the %sp of its frame once we flush them, and %fp and the return address
+// are the last two words of it. the window we find at a frame's %fp belongs to whoever called it, and the return
+// address tells us which call they made. we skip over our own frames, and stop at the first one after that we
+// don't know, which is whatever called main
+static void scan_stack(void){
+	int* w = (int*)__builtin_frame_address(0);
+	int* caller;
+	struct gc_site* site;
+	int skipped = 0, found = 0, r, i;
+
+	asm volatile("ta 3");
+	while (w != 0){
+		site = find_site(w[15]);
+		if (site == 0 && (found || ++skipped > RUNTIME_FRAMES)){
+			return;
+		}
+		caller = (int*)w[14];
+		if (site != 0){
+			found = 1;
+			for (r = 0; r < 16; r++){
+				if (site->regs & (1 << r)){
+					caller[r] = relocate(caller[r]);
+				}
+			}
+			for (i = 1; i <= site->slots[0]; i++){
+				*(int*)((char*)caller[14] + site->slots[i]) =
+					relocate(*(int*)((char*)caller[14] + site->slots[i]));
+			}
+		}
+		w = caller;
+	}
+}
+
+// copies everything the program can still get to into a new space big enough for it and need more bytes
+// everything reachable from the stack gets copied first, then we go through what we copied, copying whatever it
+// points to, until we catch up with the end
+static void collect(size_t need){
+	size_t used = (char*)alloc_ptr - (char*)space, live;
+	size_t old_bytes = (char*)alloc_limit - (char*)space;
+	int* to;
+	int* scan;
+	int* layout;
+	int k, v;
+
+	while (space_bytes < used + need){
+		space_bytes *= 2;
+	}
+	to = map(space_bytes);
+	to_ptr = to;
+	from_start = space;
+	from_end = alloc_ptr;
+
+	// where every allocation starts, so pointers into the middle of arrays can find the array
+	starts = (unsigned int*) map(used / 128 * sizeof(unsigned int) + sizeof(unsigned int));
+	for (scan = from_start; scan < from_end; scan += words(scan)){
+		starts[(scan - from_start) >> 5] |= 1u << ((scan - from_start) & 31);
+	}
+
+	scan_stack();
+	for (scan = to; scan < to_ptr; scan += words(scan)){
+		if (!IS_ARRAY(scan[0])){
+			layout = (int*)scan[0];
+			for (k = 0; k < layout[0]; k++){
+				v = scan[1 + k];
+				if ((layout[1 + k / 32] & (1u << (k % 32))) && IN_FROM(v)){
+					scan[1 + k] = (int)(forward((int*)v - 1) + 1);
+				}
+			}
+		}
+	}
+
+	munmap(starts, used / 128 * sizeof(unsigned int) + sizeof(unsigned int));
+	munmap(space, old_bytes);
+	space = to;
+	alloc_ptr = to_ptr;
+	alloc_limit = (int*)((char*)to + space_bytes);
+
+	// if most of the space is still in use, the next one gets to be bigger
+	live = (char*)alloc_ptr - (char*)space;
+	if (live + need > space_bytes / 2){
+		space_bytes *= 2;
+	}
+}
+
+// hands out size words after a header, collecting first if there isn't room
+static int* allocate(int header, int size){
+	size_t need = (size_t)(size + 1) * sizeof(int);
+	int* p;
+
+	if (space == 0){
+		while (space_bytes < need){
+			space_bytes *= 2;
+		}
+		space = map(space_bytes);
+		alloc_ptr = space;
+		alloc_limit = (int*)((char*)space + space_bytes);
+	} else if ((size_t)((char*)alloc_limit - (char*)alloc_ptr) < need){
+		collect(need);
+	}
+	p = alloc_ptr;
+	alloc_ptr += size + 1;
+	p[0] = header;
+	return p + 1;
+}
+
+// used to create objects, size is the number of fields, which gets at least one word
+// auto initializes fields to zero
+int* alloc_obj(int* layout, int size){
+	return allocate((int)layout, size < 1 ? 1 : size);
+}
+
+// used to create arrays, size is in words and counts the length
 // auto initializes elements to zero
-int* alloc_obj(int size){
-	return (int*) calloc(size, sizeof(int));
-}
\ No newline at end of file
+int* alloc_array(int size){
+	if (size < 1){
+		fail("negative array size\n");
+	}
+	return allocate((size << 2) | 1, size);
+}
+
+// compiled code calls this with the header it would have written, when the space runs out
+int* alloc_slow(int header, int size){
+	if (IS_ARRAY(header)){
+		return alloc_array(size);
+	}
+	return alloc_obj((int*)header, size);
+}